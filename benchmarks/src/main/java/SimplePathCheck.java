@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the simple path search with the search it replaced.
+ *
+ * Small grammars are generated with many rules that have a single value,
+ * including rules that produce each other, so the chains have choices,
+ * dead ends and cycles. For every rule and every value, the s command is
+ * run from a node of that rule, and the nodes it creates or the error it
+ * shows are compared with the result of the previous search, which walked
+ * backwards from the value one producer at a time.
+ *
+ * Run with {@code java -cp benchmarks.jar SimplePathCheck [grammars] [seed]}.
+ */
+public class SimplePathCheck {
+
+    private static final String[] TERMINALS = {"a", "b", "c"};
+
+    private final StringBuilder error = new StringBuilder();
+    private GrammarModel model;
+    private CommandEngine engine;
+
+    public static void main(String[] args) {
+        int grammars = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        Random random = new Random(seed);
+        SimplePathCheck check = new SimplePathCheck();
+        int searches = 0;
+        int failures = 0;
+        for (int i = 0; i < grammars; i++) {
+            String text = generate(random);
+            int[] result = check.run(text);
+            searches += result[0];
+            failures += result[1];
+        }
+        System.out.println(searches + " searches on " + grammars + " grammars, " + failures + " different");
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * A grammar with 2 to 7 rules. Half of the values are a single rule.
+     */
+    private static String generate(Random random) {
+        int rules = 2 + random.nextInt(6);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < rules; i++) {
+            int count = 1 + random.nextInt(3);
+            List<String> values = new ArrayList<>();
+            for (int j = 0; j < count; j++) {
+                int kind = random.nextInt(10);
+                if (kind < 5) values.add("<r" + random.nextInt(rules) + ">");
+                else if (kind < 7) values.add(TERMINALS[random.nextInt(TERMINALS.length)]);
+                else {
+                    StringBuilder value = new StringBuilder();
+                    int parts = 2 + random.nextInt(2);
+                    for (int k = 0; k < parts; k++) {
+                        if (k > 0) value.append(' ');
+                        if (random.nextBoolean()) value.append("<r").append(random.nextInt(rules)).append('>');
+                        else value.append(TERMINALS[random.nextInt(TERMINALS.length)]);
+                    }
+                    values.add(value.toString());
+                }
+            }
+            lines.add("<r" + i + "> ::= " + String.join(" | ", values));
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Search for every value from every rule of the grammar.
+     * @return Number of searches and number of different results.
+     */
+    private int[] run(String text) {
+        model = new GrammarModel();
+        model.setText(text);
+        engine = new CommandEngine(model::getGrammar, model.getSymbols(), (header, message) -> {
+            error.append(header).append(": ").append(message);
+        });
+        Grammar grammar = model.getGrammar();
+        int searches = 0;
+        int failures = 0;
+        for (Rule rule : grammar.getRules()) {
+            for (String value : grammar.getIndex().getValues()) {
+                searches++;
+                String actual = search(rule.getLine(), value);
+                String expected = previous(grammar.getIndex(), rule.getFullName(), value);
+                if (!actual.equals(expected)) {
+                    failures++;
+                    System.out.println("Grammar:\n" + text + "\nFrom " + rule.getFullName() + " to " + value);
+                    System.out.println("  expected " + expected + "\n  actual   " + actual);
+                }
+            }
+        }
+        return new int[] {searches, failures};
+    }
+
+    /**
+     * Run the s command from a new node of the rule.
+     */
+    private String search(int line, String value) {
+        engine.clear();
+        engine.enter("+" + line);
+        error.setLength(0);
+        engine.enter("s 0 \"" + value + "\"");
+        if (error.length() > 0) return error.toString();
+        GraphInfo graph = engine.getGraph();
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < graph.size(); i++) {
+            nodes.add(graph.getNode(i) + "^" + graph.getParent(i));
+        }
+        return String.join(" ", nodes);
+    }
+
+    /**
+     * The search that was used before the chains were precomputed, with
+     * the nodes it created written the same way as {@link #search}.
+     */
+    private static String previous(GrammarIndex rules, String target, String pattern) {
+        String to = "\"" + pattern + "\"";
+        Set<String> checked = new HashSet<>();
+        List<String> path = new ArrayList<>();
+        boolean first = true;
+        while (!to.equals(target)) {
+            if (first) {
+                first = false;
+                String start = to;
+                Optional<String> startRule = Utils.single(rules.getValues().stream().filter(s -> Utils.matchesSearch(start, s)));
+                if (startRule.isPresent()) {
+                    path.add(startRule.get());
+                    to = startRule.get();
+                    if (to.equals(target)) return target + "^-1";
+                }
+                else return "No node: Cannot find a node that matches the pattern, or there are multiple nodes that match the pattern.";
+            }
+            else path.add(to);
+            Set<String> producers = rules.getProducers(to);
+            if (producers == null) return "No path: There is no path to the specified value.";
+            Optional<String> parent = Utils.single(producers.stream().filter(s -> !checked.contains(s)));
+            if (!parent.isPresent()) {
+                return "No path: There is no path to the specified value, or there are multiple paths to the specified value.";
+            }
+            to = parent.get();
+            checked.add(to);
+        }
+        // Node 0 is the target, then the rules from the value upwards, then
+        // the parts of the value
+        List<String> nodes = new ArrayList<>();
+        nodes.add(target + "^-1");
+        int rulesOnPath = path.size() - 1;
+        for (int i = 1; i <= rulesOnPath; i++) {
+            nodes.add(path.get(i) + "^" + (i == rulesOnPath ? 0 : i + 1));
+        }
+        int valueParent = rulesOnPath > 0 ? 1 : 0;
+        nodes.addAll(Utils.getRuleParts(path.get(0)).map(s -> s + "^" + valueParent).collect(Collectors.toList()));
+        return String.join(" ", nodes);
+    }
+
+}
@@ -0,0 +1,104 @@
+import benchmarks.GrammarWorkload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A generated grammar for the benchmarks.
+ *
+ * Each rule has a few values made of terminals and rules with higher
+ * numbers, so the grammar has no cycles. A separate chain of rules with a
+ * single value each leads to a value that appears nowhere else, which is
+ * what the simple path search is run on.
+ */
+public class SyntheticGrammar implements GrammarWorkload {
+
+    public static final int CHAIN = 20;
+    public static final String TARGET = "\"leafvalue\"";
+    public static final String PATTERN = "r1t";
+
+    private List<String> texts;
+    private String text;
+    private List<String> values;
+    private GrammarModel model;
+    private CommandEngine engine;
+    private int chainRule;
+
+    @Override
+    public void setUp(int rules, long seed) {
+        Random random = new Random(seed);
+        texts = new ArrayList<>(rules + CHAIN);
+        values = new ArrayList<>();
+        for (int i = 0; i < rules; i++) {
+            StringBuilder rule = new StringBuilder("<r").append(i).append("> ::= ");
+            int count = 1 + random.nextInt(4);
+            for (int j = 0; j < count; j++) {
+                StringBuilder value = new StringBuilder();
+                int parts = 1 + random.nextInt(4);
+                for (int k = 0; k < parts; k++) {
+                    if (k > 0) value.append(' ');
+                    if (i + 1 < rules && random.nextInt(3) == 0) {
+                        value.append("<r").append(i + 1 + random.nextInt(rules - i - 1)).append('>');
+                    }
+                    else value.append('t').append(random.nextInt(rules));
+                }
+                if (j > 0) rule.append(" | ");
+                rule.append(value);
+                values.add(value.toString());
+            }
+            texts.add(rule.toString());
+        }
+        chainRule = rules + 1;
+        for (int i = 0; i < CHAIN; i++) {
+            String value = i + 1 < CHAIN ? "<c" + (i + 1) + ">" : "leafvalue";
+            texts.add("<c" + i + "> ::= " + value);
+            values.add(value);
+        }
+        text = String.join("\n", texts);
+        model = new GrammarModel();
+        model.setText(text);
+        engine = new CommandEngine(model::getGrammar, model.getSymbols(), (header, message) -> {
+        });
+        // Build the search index and chains once, as the application does
+        // for each version of the rules
+        simplePath();
+    }
+
+    @Override
+    public Object parseRule(int index) {
+        return Rule.parse(index + 1, texts.get(index % texts.size()));
+    }
+
+    @Override
+    public Object readRules() {
+        return new ProductionRuleReader().fromString(text);
+    }
+
+    @Override
+    public int matchAll() {
+        int count = 0;
+        for (String value : values) {
+            if (Utils.matchesSearch(PATTERN, value)) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public long splitAll() {
+        long count = 0;
+        for (String value : values) {
+            count += Utils.getRuleParts(value).count();
+        }
+        return count;
+    }
+
+    @Override
+    public int simplePath() {
+        engine.clear();
+        engine.enter("+" + chainRule);
+        engine.enter("s 0 " + TARGET);
+        return engine.getGraph().size();
+    }
+
+}
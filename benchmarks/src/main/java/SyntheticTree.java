@@ -0,0 +1,51 @@
+import benchmarks.TreeWorkload;
+
+import java.util.Random;
+
+/**
+ * A generated tree for the benchmarks.
+ *
+ * Half of the nodes are non-terminals, and every node is linked to a
+ * random non-terminal created before it, so some non-terminals are left
+ * without children.
+ */
+public class SyntheticTree implements TreeWorkload {
+
+    public static final int SYMBOLS = 50;
+
+    private GraphInfo graph;
+    private int root;
+
+    @Override
+    public void setUp(int nodes, long seed) {
+        Random random = new Random(seed);
+        graph = new GraphInfo(new SymbolTable());
+        root = graph.newNode("<r0>");
+        int[] parents = new int[nodes];
+        int count = 0;
+        parents[count++] = root;
+        for (int i = 1; i < nodes; i++) {
+            boolean rule = random.nextBoolean();
+            int n = graph.newNode(rule ? "<r" + random.nextInt(SYMBOLS) + ">" : "t" + random.nextInt(SYMBOLS));
+            graph.addLink(parents[random.nextInt(count)], n);
+            if (rule) parents[count++] = n;
+        }
+    }
+
+    @Override
+    public int deleteAll() {
+        graph.delete(root);
+        return graph.size();
+    }
+
+    @Override
+    public int getIncomplete() {
+        return graph.getIncomplete().size();
+    }
+
+    @Override
+    public int getGraphSpec(boolean full) {
+        return graph.getGraphSpec(true, full, root).length();
+    }
+
+}
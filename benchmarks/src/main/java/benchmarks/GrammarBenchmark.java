@@ -0,0 +1,69 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and searching the production rules of grammars of different
+ * sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GrammarBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int rules;
+
+    private GrammarWorkload grammar;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        grammar = Workloads.grammar(rules);
+    }
+
+    /**
+     * One rule at a time, going through every rule in turn.
+     */
+    @Benchmark
+    public Object parseRule() {
+        next = next + 1 == rules ? 0 : next + 1;
+        return grammar.parseRule(next);
+    }
+
+    @Benchmark
+    public Object readRules() {
+        return grammar.readRules();
+    }
+
+    @Benchmark
+    public int matchesSearch() {
+        return grammar.matchAll();
+    }
+
+    @Benchmark
+    public long getRuleParts() {
+        return grammar.splitAll();
+    }
+
+    @Benchmark
+    public int simplePath() {
+        return grammar.simplePath();
+    }
+
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+/**
+ * Operations on a synthetic grammar. The application classes are in the
+ * default package, which a benchmark cannot be in, so they are called
+ * through this interface by {@code SyntheticGrammar}.
+ */
+public interface GrammarWorkload {
+
+    /**
+     * Generate the grammar.
+     * @param rules Number of production rules.
+     * @param seed Seed for the random choices.
+     */
+    void setUp(int rules, long seed);
+
+    /**
+     * Parse one production rule with {@code Rule.parse}.
+     * @param index Index of the rule.
+     * @return Parsed rule.
+     */
+    Object parseRule(int index);
+
+    /**
+     * Parse the whole text with {@code ProductionRuleReader.fromString}.
+     * @return Parsed rules.
+     */
+    Object readRules();
+
+    /**
+     * Test a pattern against every production value with
+     * {@code Utils.matchesSearch}.
+     * @return Number of matching values.
+     */
+    int matchAll();
+
+    /**
+     * Split every production value with {@code Utils.getRuleParts}.
+     * @return Number of parts.
+     */
+    long splitAll();
+
+    /**
+     * Start a new tree with one node and find the simple path from it to a
+     * value at the end of a chain of rules.
+     * @return Number of nodes in the tree afterwards.
+     */
+    int simplePath();
+
+}
@@ -0,0 +1,53 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading trees of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TreeBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int nodes;
+
+    private TreeWorkload tree;
+
+    @Setup
+    public void setUp() {
+        tree = Workloads.tree(nodes);
+    }
+
+    @Benchmark
+    public int getIncomplete() {
+        return tree.getIncomplete();
+    }
+
+    @Benchmark
+    public int getGraphSpec() {
+        return tree.getGraphSpec(false);
+    }
+
+    @Benchmark
+    public int getGraphSpecFull() {
+        return tree.getGraphSpec(true);
+    }
+
+}
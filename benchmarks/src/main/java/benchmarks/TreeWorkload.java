@@ -0,0 +1,35 @@
+package benchmarks;
+
+/**
+ * Operations on a synthetic tree, called through this interface by
+ * {@code SyntheticTree} for the same reason as {@link GrammarWorkload}.
+ */
+public interface TreeWorkload {
+
+    /**
+     * Generate the tree.
+     * @param nodes Number of nodes.
+     * @param seed Seed for the random choices.
+     */
+    void setUp(int nodes, long seed);
+
+    /**
+     * Delete the root and every node below it with {@code GraphInfo.delete}.
+     * @return Number of nodes left.
+     */
+    int deleteAll();
+
+    /**
+     * Find the non-terminal nodes without children.
+     * @return Number of nodes found.
+     */
+    int getIncomplete();
+
+    /**
+     * Build the dot spec of the tree.
+     * @param full Whether every node is labelled with its ID.
+     * @return Length of the spec.
+     */
+    int getGraphSpec(boolean full);
+
+}
@@ -0,0 +1,34 @@
+package benchmarks;
+
+/**
+ * Creates the workloads, which are in the default package and can only be
+ * found by name.
+ */
+public final class Workloads {
+
+    public static final long SEED = 42;
+
+    private Workloads() {
+    }
+
+    public static GrammarWorkload grammar(int rules) {
+        GrammarWorkload workload = create(GrammarWorkload.class, "SyntheticGrammar");
+        workload.setUp(rules, SEED);
+        return workload;
+    }
+
+    public static TreeWorkload tree(int nodes) {
+        TreeWorkload workload = create(TreeWorkload.class, "SyntheticTree");
+        workload.setUp(nodes, SEED);
+        return workload;
+    }
+
+    private static <T> T create(Class<T> type, String name) {
+        try {
+            return type.cast(Class.forName(name).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create " + name, e);
+        }
+    }
+
+}
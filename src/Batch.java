@@ -0,0 +1,258 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds trees from a script of commands without opening a window.
+ *
+ * Usage: java -cp ProductionGrapher.jar Batch [--dot=PATH] [--out=DIR]
+ * [--formats=png,svg] [--jobs=N] [--session=DIR] [--stats=FILE] RULES SCRIPT
+ *
+ * Exports run in the background on up to N dot processes at once, which
+ * is the number of processors by default. With a session directory, the
+ * script continues the tree saved there and the result is saved back. With
+ * a stats file, the time taken by each phase is saved to it as CSV once the
+ * script is done.
+ *
+ * Each line of the script is a command, entered the same way as in the
+ * command box. Lines starting with @ stand for the other keys and for
+ * exporting:
+ * <ul>
+ *     <li>@tab PATTERN, @down [PATTERN], @up, @left, @right: press the key
+ *     with the pattern in the command box.</li>
+ *     <li>@export NAME: save the tree to NAME. Without an extension the
+ *     tree is saved once for each of the formats.</li>
+ *     <li>@clear: remove every node and start a new tree.</li>
+ * </ul>
+ * Empty lines and lines starting with # are skipped.
+ */
+public class Batch {
+    
+    public static final List<String> FORMATS = Arrays.asList("png", "jpeg", "gif", "bmp", "svg", "dot", "pdf");
+    
+    private String script;
+    private Dot dot;
+    private File out;
+    private List<String> formats;
+    private GrammarModel grammar;
+    private CommandEngine engine;
+    private ExportPool exporter;
+    private int line;
+    private int errors;
+    
+    public static void main(String[] args) {
+        Map<String, String> named = new HashMap<>();
+        List<String> unnamed = new ArrayList<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (arg.startsWith("--") && index > 2) named.put(arg.substring(2, index), arg.substring(index + 1));
+            else unnamed.add(arg);
+        }
+        if (unnamed.size() != 2) {
+            System.err.println("Usage: Batch [--dot=PATH] [--out=DIR] [--formats=png,svg] [--jobs=N] [--session=DIR] [--stats=FILE] RULES SCRIPT");
+            System.exit(2);
+        }
+        Dot dot = new Dot(named.getOrDefault("dot", Dot.defaultPath()));
+        File out = new File(named.getOrDefault("out", "."));
+        List<String> formats = Arrays.asList(named.getOrDefault("formats", "png").split(","));
+        for (String format : formats) {
+            if (!FORMATS.contains(format)) {
+                System.err.println("Unknown format: " + format);
+                System.exit(2);
+            }
+        }
+        int jobs;
+        try {
+            jobs = Integer.parseInt(named.getOrDefault("jobs", String.valueOf(ExportPool.THREADS)));
+        } catch (NumberFormatException e) {
+            jobs = 0;
+        }
+        if (jobs < 1) {
+            System.err.println("Invalid number of jobs: " + named.get("jobs"));
+            System.exit(2);
+        }
+        try {
+            Batch batch = new Batch(new File(unnamed.get(0)), unnamed.get(1), dot, out, formats, jobs);
+            if (named.containsKey("session")) batch.openSession(new File(named.get("session")));
+            boolean success = batch.run();
+            if (named.containsKey("stats") && !saveStats(new File(named.get("stats")))) success = false;
+            System.exit(success ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("Could not read " + e.getMessage());
+            System.exit(2);
+        } catch (InterruptedException e) {
+            System.exit(2);
+        }
+    }
+    
+    private static boolean saveStats(File file) {
+        try {
+            LatencyStats.writeCsv(file);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not save " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * @param rules File with the production rules.
+     * @param script Path to the script to run.
+     * @param dot Dot program used for exports.
+     * @param out Directory that exports are saved in.
+     * @param formats Formats to save when an export has no extension.
+     * @param jobs Number of dot processes that can run at once.
+     * @throws IOException If the rules could not be read.
+     */
+    public Batch(File rules, String script, Dot dot, File out, List<String> formats, int jobs) throws IOException {
+        this.script = script;
+        this.dot = dot;
+        this.out = out;
+        this.formats = formats;
+        grammar = new GrammarModel();
+        long start = System.nanoTime();
+        grammar.load(rules);
+        LatencyStats.record(LatencyStats.PARSE, start);
+        engine = new CommandEngine(grammar::getGrammar, grammar.getSymbols(), this::error);
+        exporter = new ExportPool(jobs, jobs * 2);
+    }
+    
+    /**
+     * Start from the tree saved in a session, and save every command to it.
+     * @param dir Directory of the session.
+     */
+    public void openSession(File dir) {
+        engine.openSession(new SessionJournal(dir, grammar.getSymbols()));
+    }
+    
+    /**
+     * Run every line of the script and wait for the exports to finish.
+     * @return True if no line caused an error.
+     * @throws IOException If the script could not be read.
+     * @throws InterruptedException If interrupted while waiting for exports.
+     */
+    public boolean run() throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(new File(script).toPath())) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                try {
+                    execute(text);
+                } catch (NumberFormatException e) {
+                    error("Invalid command", text.trim());
+                }
+            }
+        } finally {
+            engine.closeSession();
+            exporter.await();
+            exporter.shutdown();
+        }
+        synchronized (this) {
+            return errors == 0;
+        }
+    }
+    
+    /**
+     * Run one line of the script.
+     * @param text Line of the script.
+     */
+    private void execute(String text) {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) return;
+        if (!trimmed.startsWith("@")) {
+            engine.enter(trimmed);
+            return;
+        }
+        int space = trimmed.indexOf(' ');
+        String key = space < 0 ? trimmed.substring(1) : trimmed.substring(1, space);
+        String arg = space < 0 ? "" : trimmed.substring(space + 1).trim();
+        switch (key.toLowerCase()) {
+            case "tab":
+                engine.tab(arg);
+                break;
+            case "down":
+                engine.down(arg);
+                break;
+            case "up":
+                engine.up();
+                break;
+            case "left":
+                engine.left(arg);
+                break;
+            case "right":
+                engine.right(arg);
+                break;
+            case "clear":
+                engine.clear();
+                break;
+            case "export":
+                export(arg);
+                break;
+            default:
+                error("Unknown directive", trimmed);
+        }
+    }
+    
+    /**
+     * Save the tree without extras, the same way it is saved from the window.
+     * @param name File name, with or without an extension.
+     */
+    private void export(String name) {
+        if (name.isEmpty()) {
+            error("No file", "Missing file name to export to.");
+            return;
+        }
+        if (!dot.isValid()) {
+            error("Invalid dot path", "Invalid path to DOT.");
+            return;
+        }
+        int index = name.lastIndexOf('.');
+        String extension = index < 0 ? null : name.substring(index + 1);
+        if (extension != null && FORMATS.contains(extension)) {
+            export(Collections.singletonList(extension), Collections.singletonList(new File(out, name)));
+            return;
+        }
+        List<File> files = new ArrayList<>();
+        for (String format : formats) files.add(new File(out, name + "." + format));
+        export(formats, files);
+    }
+    
+    /**
+     * Queue an export of every format in one dot process. The spec is taken
+     * now, so the script can keep changing the tree while the files are
+     * saved.
+     */
+    private void export(List<String> types, List<File> files) {
+        GraphSpec spec = engine.getGraph().getSpec(false, false, engine.getRelevant());
+        int line = this.line;
+        File file = files.get(0);
+        try {
+            File parent = file.getParentFile();
+            if (parent != null) Files.createDirectories(parent.toPath());
+            exporter.submit(dot, spec, types, files, e -> {
+                error(line, "DOT error", "Could not save " + files + ": " + e.getMessage());
+            });
+        } catch (IOException e) {
+            error("Invalid file", "Could not create the folder for " + file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void error(String header, String msg) {
+        error(line, header, msg);
+    }
+    
+    private synchronized void error(int line, String header, String msg) {
+        errors++;
+        System.err.println(script + ":" + line + ": " + header + ": " + msg);
+    }
+    
+}
@@ -0,0 +1,641 @@
+import java.io.IOException;
+import java.util.function.BiConsumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs the commands that build and change the tree.
+ *
+ * The engine holds the graph, the relevant nodes, and the selection state,
+ * but does not show anything. Each command returns how the tree should be
+ * drawn afterwards, and errors are passed to a handler, so the same
+ * commands can be run from the window or from a script.
+ */
+public class CommandEngine {
+    
+    public static final int DEFAULT = 0;
+    public static final int SELECT = 1;
+    
+    public static final int NO_DRAW = 0;
+    public static final int DRAW = 1;
+    public static final int DRAW_EXTRA = 2;
+    public static final int DRAW_FULL = 3;
+    
+    /**
+     * Number of levels above the relevant node that are shown in focus mode.
+     */
+    public static final int FOCUS_LEVELS = 3;
+    
+    private Supplier<Grammar> grammar;
+    private BiConsumer<String, String> errors;
+    private SymbolTable symbols;
+    
+    private int state = DEFAULT;
+    private GraphInfo graphInfo;
+    private Rule selecting;
+    private int parent;
+    private final RelevantNodes relevant = new RelevantNodes();
+    private GraphHistory history;
+    private SessionJournal journal;
+    private boolean focus;
+    
+    /**
+     * @param grammar Supplies the current version of the production rules.
+     * @param symbols Symbol table used by the production rules.
+     * @param errors Receives the header and message of each error.
+     */
+    public CommandEngine(Supplier<Grammar> grammar, SymbolTable symbols, BiConsumer<String, String> errors) {
+        this.grammar = grammar;
+        this.symbols = symbols;
+        this.errors = errors;
+        clear();
+    }
+    
+    public int getState() {
+        return state;
+    }
+    
+    public GraphInfo getGraph() {
+        return graphInfo;
+    }
+    
+    /**
+     * Get the rule that options are being selected from.
+     * @return Rule being selected from, or null if not selecting.
+     */
+    public Rule getSelecting() {
+        return selecting;
+    }
+    
+    /**
+     * Get the next relevant node.
+     * @return Relevant node number or -1.
+     */
+    public int getRelevant() {
+        if (relevant.size() > 0) return relevant.first();
+        return -1;
+    }
+    
+    /**
+     * Returns whether only the area around the relevant node is shown.
+     * @return True in focus mode.
+     */
+    public boolean isFocus() {
+        return focus;
+    }
+    
+    /**
+     * Get the spec of the part of the tree that is shown. Collapsed nodes
+     * are summarized, and in focus mode only the area around the relevant
+     * node is included.
+     * @param extra Whether to display extras like node IDs and the relevant node.
+     * @param full Same as extra but will also display IDs on terminal symbols.
+     * @return Graph spec.
+     */
+    public GraphSpec getSpec(boolean extra, boolean full) {
+        return graphInfo.getViewSpec(extra, full, getRelevant(), focus ? FOCUS_LEVELS : -1);
+    }
+    
+    /**
+     * Remove every node and start a new tree. The history is cleared.
+     */
+    public void clear() {
+        graphInfo = new GraphInfo(symbols);
+        history = new GraphHistory(GraphHistory.LIMIT);
+        graphInfo.setHistory(history);
+        relevant.clear();
+        relevant.setHistory(history);
+        state = DEFAULT;
+        selecting = null;
+        if (journal != null) {
+            graphInfo.setJournal(journal);
+            try {
+                journal.snapshot(graphInfo, relevant);
+            } catch (IOException e) {
+                closeJournal(e);
+            }
+        }
+    }
+    
+    /**
+     * Load the tree saved in a session and keep saving every command to it.
+     * @param journal Journal of the session.
+     * @return True if a saved tree was loaded.
+     */
+    public boolean openSession(SessionJournal journal) {
+        closeSession();
+        clear();
+        graphInfo.setHistory(null);
+        relevant.setHistory(null);
+        boolean loaded = false;
+        try {
+            loaded = journal.load(graphInfo, relevant);
+            this.journal = journal;
+            graphInfo.setJournal(journal);
+            relevant.setJournal(journal);
+        } catch (IOException e) {
+            errors.accept("Session error", "Could not load the saved session.\n" + e.getMessage());
+            clear();
+        }
+        graphInfo.setHistory(history);
+        relevant.setHistory(history);
+        return loaded;
+    }
+    
+    /**
+     * Save a snapshot of the tree and stop saving to the session.
+     */
+    public void closeSession() {
+        if (journal == null) return;
+        try {
+            journal.snapshot(graphInfo, relevant);
+            journal.close();
+        } catch (IOException e) {
+            errors.accept("Session error", "Could not save the session.\n" + e.getMessage());
+        }
+        graphInfo.setJournal(null);
+        relevant.setJournal(null);
+        journal = null;
+    }
+    
+    /**
+     * Stop saving to the session after an error.
+     */
+    private void closeJournal(IOException e) {
+        errors.accept("Session error", "Could not save the session. Changes are no longer saved.\n" + e.getMessage());
+        try {
+            journal.close();
+        } catch (IOException ignored) {
+        }
+        graphInfo.setJournal(null);
+        relevant.setJournal(null);
+        journal = null;
+    }
+    
+    /**
+     * Save the changes made by the last command to the session.
+     */
+    private void commit() {
+        if (journal == null) return;
+        try {
+            journal.commit();
+            if (journal.isDue()) journal.snapshot(graphInfo, relevant);
+        } catch (IOException e) {
+            closeJournal(e);
+        }
+    }
+    
+    /**
+     * Right arrow: selects the last option.
+     * @param text Text in the command box.
+     * @return How to draw the tree.
+     */
+    public int right(String text) {
+        return record(() -> pressRight(text));
+    }
+    
+    /**
+     * Left arrow: selects the first option.
+     * @param text Text in the command box.
+     * @return How to draw the tree.
+     */
+    public int left(String text) {
+        return record(() -> pressLeft(text));
+    }
+    
+    /**
+     * Up arrow: cancels the selection or moves to the next relevant node.
+     * @return How to draw the tree.
+     */
+    public int up() {
+        return record(this::pressUp);
+    }
+    
+    /**
+     * Tab: selects the only option that matches a pattern, or finds a simple
+     * path from the relevant node to the value that matches it.
+     * @param text Text in the command box.
+     * @return How to draw the tree.
+     */
+    public int tab(String text) {
+        return record(() -> pressTab(text));
+    }
+    
+    /**
+     * Down arrow: selects the relevant node or the last option when there is
+     * no text, and otherwise finds a simple path from the relevant node.
+     * @param text Text in the command box.
+     * @return How to draw the tree.
+     */
+    public int down(String text) {
+        return record(() -> pressDown(text));
+    }
+    
+    /**
+     * Enter: runs a command.
+     * Entering z undoes the last command and y redoes it.
+     * @param text Text in the command box.
+     * @return How to draw the tree.
+     * @throws NumberFormatException If a number in the command is invalid.
+     */
+    public int enter(String text) {
+        String command = text.trim().toLowerCase();
+        if (state == DEFAULT && command.equals("z")) return undo();
+        if (state == DEFAULT && command.equals("y")) return redo();
+        return record(() -> pressEnter(text));
+    }
+    
+    /**
+     * Undo the last command that changed the tree or the relevant nodes.
+     * @return How to draw the tree.
+     */
+    public int undo() {
+        if (state != DEFAULT || !history.undo(graphInfo, relevant)) return NO_DRAW;
+        commit();
+        return DRAW_EXTRA;
+    }
+    
+    /**
+     * Redo the last command that was undone.
+     * @return How to draw the tree.
+     */
+    public int redo() {
+        if (state != DEFAULT || !history.redo(graphInfo, relevant)) return NO_DRAW;
+        commit();
+        return DRAW_EXTRA;
+    }
+    
+    /**
+     * Run a command as one step of the history.
+     */
+    private int record(IntSupplier command) {
+        long start = System.nanoTime();
+        history.begin();
+        try {
+            return command.getAsInt();
+        } finally {
+            history.end();
+            commit();
+            LatencyStats.record(LatencyStats.COMMAND, start);
+        }
+    }
+    
+    private int pressRight(String text) {
+        if (state != SELECT || !text.isEmpty()) return NO_DRAW;
+        makeSelection(selecting.getParts().size());
+        return DRAW_EXTRA;
+    }
+    
+    private int pressLeft(String text) {
+        if (state != SELECT || !text.isEmpty()) return NO_DRAW;
+        makeSelection(1);
+        return DRAW_EXTRA;
+    }
+    
+    private int pressUp() {
+        if (state == SELECT) {
+            makeSelection(-1);
+            return NO_DRAW;
+        }
+        if (relevant.size() > 0) {
+            relevant.removeFirst();
+        }
+        return DRAW_EXTRA;
+    }
+    
+    private int pressTab(String text) {
+        text = text.trim();
+        if (text.isEmpty()) return NO_DRAW;
+        if (state == SELECT) {
+            int option = getPartSearch().single(text);
+            if (option < 0) return NO_DRAW;
+            makeSelection(option + 1);
+            return DRAW_EXTRA;
+        }
+        return simplePath(getRelevant(), text);
+    }
+    
+    private int pressDown(String text) {
+        text = text.trim().toLowerCase();
+        if (text.isEmpty()) {
+            if (state == DEFAULT) {
+                startSelection(getRelevant());
+            }
+            else if (state == SELECT) {
+                makeSelection(selecting.getParts().size());
+            }
+            return DRAW_EXTRA;
+        }
+        return simplePath(getRelevant(), String.join(" ", text.split(" +")));
+    }
+    
+    private int pressEnter(String text) {
+        String raw = text.trim();
+        text = raw.toLowerCase();
+        String[] parts = text.split(" +");
+        if (text.isEmpty()) return NO_DRAW;
+        
+        if (state == SELECT) {
+            // Minus will cancel selection
+            if (text.startsWith("-")) {
+                // Cancel select
+                makeSelection(-1);
+                return NO_DRAW;
+            }
+            // Select node
+            int line = Integer.parseInt(text);
+            makeSelection(line);
+            return DRAW_EXTRA;
+        }
+        
+        // Check prefixes first
+        if (text.equals("r")) {
+            // Redraw with node numbers
+            return DRAW_EXTRA;
+        }
+        else if (text.equals("o")) {
+            // Draw without node numbers
+            return DRAW;
+        }
+        else if (text.equals("f")) {
+            // Draw with node numbers (including terminal symbols)
+            return DRAW_FULL;
+        }
+        else if (text.equals("v")) {
+            // Switch between showing the whole tree and the relevant area
+            focus = !focus;
+            return DRAW_EXTRA;
+        }
+        else if (text.startsWith("<") || text.startsWith(">")) {
+            // Collapse or expand node
+            boolean collapse = text.startsWith("<");
+            text = text.substring(1).trim();
+            if (text.isEmpty()) return NO_DRAW;
+            int n = Integer.parseInt(text);
+            if (!graphInfo.exists(n)) {
+                errors.accept("Invalid node", "There is no node " + n);
+                return NO_DRAW;
+            }
+            graphInfo.setCollapsed(n, collapse);
+            return DRAW_EXTRA;
+        }
+        else if (text.startsWith("+")) {
+            // New node
+            text = text.substring(1).trim();
+            if (text.isEmpty()) return NO_DRAW;
+            int r = Integer.parseInt(text);
+            Rule rule = grammar.get().getRule(r);
+            if (rule == null) {
+                errors.accept("Invalid Index", "Could not get production rule " + r);
+                return NO_DRAW;
+            }
+            relevant.addLast(graphInfo.newNode(rule.getSymbol()));
+            return DRAW_EXTRA;
+        }
+        else if (text.startsWith("~")) {
+            // Unlink node
+            text = text.substring(1).trim();
+            if (text.isEmpty()) return NO_DRAW;
+            int n = Integer.parseInt(text);
+            graphInfo.unlink(n);
+            refreshRelevant();
+            return DRAW_EXTRA;
+        }
+        else if (text.startsWith("=")) {
+            // Set relevant node
+            text = text.substring(1).trim();
+            if (text.isEmpty()) return NO_DRAW;
+            int n = Integer.parseInt(text);
+            if (n < 0) return NO_DRAW;
+            relevant.moveToFront(n);
+            return DRAW_EXTRA;
+        }
+        else if (text.startsWith("-")) {
+            // Delete node (and children)
+            text = text.substring(1).trim();
+            if (text.isEmpty()) return NO_DRAW;
+            int n = Integer.parseInt(text);
+            graphInfo.delete(n);
+            refreshRelevant();
+            return DRAW_EXTRA;
+        }
+        else if (text.startsWith("*")) {
+            // Recalculate relevant nodes
+            refreshRelevant();
+            return DRAW_EXTRA;
+        }
+        else if (parts.length >= 2 && parts[0].equals("p")) {
+            // Parse a sentence into the children of a node
+            String[] words = raw.split(" +", 3);
+            int n = Integer.parseInt(parts[1]);
+            return parse(n, words.length > 2 ? words[2] : "");
+        }
+        else if (parts.length == 1) {
+            // Select node
+            int n = Integer.parseInt(parts[0]);
+            startSelection(n);
+        }
+        else if (parts.length == 2) {
+            // Set parent-child link
+            int parent = Integer.parseInt(parts[0]);
+            int child = Integer.parseInt(parts[1]);
+            graphInfo.addLink(parent, child);
+            refreshRelevant();
+            return DRAW_EXTRA;
+        }
+        else if (parts.length == 3) {
+            if (parts[0].equals("s")) {
+                // Find a simple path between a node and value
+                int n = Integer.parseInt(parts[1]);
+                return simplePath(n, parts[2]);
+            }
+            else {
+                // Set parent -- child link
+                if (parts[1].equals("--") || parts[1].equals("->")) {
+                    int parent = Integer.parseInt(parts[0]);
+                    int child = Integer.parseInt(parts[2]);
+                    graphInfo.addLink(parent, child);
+                    refreshRelevant();
+                    return DRAW_EXTRA;
+                }
+            }
+        }
+        return NO_DRAW;
+    }
+    
+    /**
+     * Refresh the list of relevant nodes. Only the nodes that were added or
+     * removed are recorded.
+     */
+    private void refreshRelevant() {
+        relevant.set(graphInfo.getIncomplete().stream().mapToInt(Integer::intValue).toArray());
+    }
+    
+    /**
+     * Get the search index of the options being selected from. The index of
+     * the current grammar is used unless the rule changed since the
+     * selection started.
+     * @return Index of the options.
+     */
+    private SearchIndex getPartSearch() {
+        Grammar g = grammar.get();
+        if (g.getIndex().getSymbolRule(selecting.getSymbol()) == selecting) return g.getPartSearch(selecting.getSymbol());
+        return new SearchIndex(selecting.getParts());
+    }
+    
+    /**
+     * Select a node to add children to.
+     * If the node does not have a production rule defined, an error is reported.
+     * @param n Number of the node to select.
+     */
+    private void startSelection(int n) {
+        if (n < 0) return;
+        int node = graphInfo.getSymbol(n);
+        Rule rule = node < 0 ? null : grammar.get().getIndex().getSymbolRule(node);
+        if (rule == null) {
+            errors.accept("Invalid node", "There is no production rule for node " + n);
+            return;
+        }
+        state = SELECT;
+        selecting = rule;
+        parent = n;
+    }
+    
+    /**
+     * Select the option on the specified line.
+     * @param i Line number (1-indexed) to select, or less than 1 to cancel.
+     */
+    private void makeSelection(int i) {
+        if (i < 1) {
+            // Cancel selection
+            state = DEFAULT;
+            selecting = null;
+            return;
+        }
+        i--;
+        if (i >= selecting.getParts().size()) {
+            errors.accept("Invalid", "Invalid line number.");
+            return;
+        }
+        // Add elements from the selection to the graph
+        addRuleParts(selecting.getPartSymbols(i), parent);
+        state = DEFAULT;
+        selecting = null;
+    }
+    
+    private void addRuleParts(String part, int parent) {
+        Utils.getRuleParts(part).mapToInt(s -> graphInfo.newNode(s)).forEach(n -> graphInfo.addLink(parent, n));
+        refreshRelevant();
+    }
+    
+    private void addRuleParts(int[] symbols, int parent) {
+        for (int symbol : symbols) {
+            graphInfo.addLink(parent, graphInfo.newNode(symbol));
+        }
+        refreshRelevant();
+    }
+    
+    /**
+     * Parse a sentence and add the parse tree as the children of a node.
+     * The tokens of the sentence are split the same way as production
+     * values. If the sentence can be parsed in more than one way, the first
+     * parse is added and the ambiguity is reported.
+     * @param node Node for the rule to start from.
+     * @param sentence Sentence to parse.
+     * @return How to draw the tree.
+     */
+    private int parse(int node, String sentence) {
+        Grammar g = grammar.get();
+        int symbol = graphInfo.getSymbol(node);
+        if (symbol < 0 || g.getIndex().getSymbolRule(symbol) == null) {
+            errors.accept("Invalid node", "There is no production rule for node " + node);
+            return NO_DRAW;
+        }
+        if (graphInfo.getChildren(node).length > 0) {
+            errors.accept("Invalid node", "Node " + node + " already has children.");
+            return NO_DRAW;
+        }
+        int[] offsets = RuleLexer.symbols(sentence);
+        int[] tokens = new int[offsets.length / 2];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = symbols.lookup(sentence.substring(offsets[i * 2], offsets[i * 2 + 1]));
+        }
+        EarleyParser.Chart chart = g.getParser().parse(symbol, tokens);
+        if (!chart.isAccepted()) {
+            int at = chart.getFailure();
+            if (at < tokens.length) {
+                String token = sentence.substring(offsets[at * 2], offsets[at * 2 + 1]);
+                errors.accept("No parse", "The sentence cannot be parsed at token " + (at + 1) + ": " + token);
+            }
+            else errors.accept("No parse", "The sentence ended before it could be parsed.");
+            return NO_DRAW;
+        }
+        int ambiguous = chart.fill(graphInfo, node);
+        refreshRelevant();
+        if (ambiguous > 0) {
+            errors.accept("Ambiguous sentence", "The sentence can be parsed in more than one way at " + ambiguous
+                    + " node(s), starting at node " + chart.getAmbiguousNode() + ". The first parse was added.");
+        }
+        return DRAW_EXTRA;
+    }
+    
+    /**
+     * Find a simple path from the given node to the value that matches the
+     * given pattern.
+     * This will only search for a simple linear path through production
+     * rules to the specified value. If there is any ambiguity or multiple
+     * paths to the value, the search will fail.
+     *
+     * If a path is found the nodes from the current node to found value are added.
+     * @param node Node number to search from.
+     * @param to Pattern representing value to reach.
+     * @return How to draw the tree.
+     */
+    private int simplePath(int node, String to) {
+        long start = System.nanoTime();
+        try {
+            return findPath(node, to);
+        } finally {
+            LatencyStats.record(LatencyStats.PATH, start);
+        }
+    }
+    
+    private int findPath(int node, String to) {
+        if (node < 0) return NO_DRAW;
+        Grammar g = grammar.get();
+        String target = graphInfo.getNode(node);
+        if (to.equals(target)) return NO_DRAW;
+        SearchIndex values = g.getValueSearch();
+        int found = values.single(to);
+        if (found < 0) {
+            errors.accept("No node", "Cannot find a node that matches the pattern, or there are multiple nodes that match the pattern.");
+            return NO_DRAW;
+        }
+        String matchedValue = values.getItems().get(found);
+        if (matchedValue.equals(target)) return NO_DRAW;
+        // The rules between the value and the starting node
+        UnitPaths.Chain chain = g.getUnitPaths().getChain(matchedValue);
+        int end = chain.indexOf(target);
+        if (end < 0) {
+            if (chain.isBlocked()) {
+                errors.accept("No path", "There is no path to the specified value, or there are multiple paths to the specified value.");
+            }
+            else errors.accept("No path", "There is no path to the specified value.");
+            return NO_DRAW;
+        }
+        // Add the path of nodes
+        int last = -1;
+        int valueParent = node;
+        for (String rule : chain.getRules().subList(0, end)) {
+            int n = graphInfo.newNode(rule);
+            if (last > -1) graphInfo.addLink(n, last);
+            else if (symbols.isNonTerminal(graphInfo.getSymbol(n))) relevant.addFirst(n);
+            last = n;
+            if (valueParent == node) valueParent = last;
+        }
+        if (last != -1) graphInfo.addLink(node, last);
+        addRuleParts(matchedValue, valueParent);
+        return DRAW_EXTRA;
+    }
+    
+}
@@ -0,0 +1,211 @@
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs the dot program to turn a graph spec into an image or another
+ * output format.
+ *
+ * The spec is written to dot on a separate thread while the output is read,
+ * so dot never waits on a full output pipe while the spec is still being
+ * sent, and the spec is never copied into one large array.
+ */
+public class Dot {
+    
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Dot input");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Number of bytes of error messages from dot that are kept for an export.
+     */
+    private static final int ERROR_LIMIT = 4096;
+    
+    private final String path;
+    
+    /**
+     * @param path Path to the dot program. Surrounding quotes are removed.
+     */
+    public Dot(String path) {
+        if (Utils.nonEmpty(path, "\"", "\"")) {
+            path = path.substring(1, path.length() - 1);
+        }
+        this.path = path;
+    }
+    
+    /**
+     * Return the content of dot.txt if it exists or else the empty string.
+     * @return Path to the dot program.
+     */
+    public static String defaultPath() {
+        File file = new File("dot.txt");
+        if (file.exists()) {
+            try {
+                return new String(Files.readAllBytes(file.toPath())).trim();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return "";
+    }
+    
+    /**
+     * Returns whether the path points to an existing file.
+     * @return True if the path is valid.
+     */
+    public boolean isValid() {
+        return new File(path).exists();
+    }
+    
+    /**
+     * Start the dot program.
+     * The -T parameter tells dot to output the graph in a specific format.
+     * Warnings from dot are read and discarded on another thread so that
+     * it never blocks writing them.
+     * @param type Output format.
+     * @return Running process.
+     * @throws IOException If the process could not be started.
+     */
+    public Process start(String type) throws IOException {
+        Process process = new ProcessBuilder(path, "-T" + type).start();
+        WRITERS.submit(() -> discard(process.getErrorStream()));
+        return process;
+    }
+    
+    /**
+     * Execute dot on the given graph spec.
+     * @param spec Graph in the dot language.
+     * @param type Output format.
+     * @param function Function that accepts the output from dot and returns a value.
+     * @param <T> Type to create from the inputstream.
+     * @return Function applied to dot output.
+     * @throws IOException If dot could not be executed.
+     * @throws InterruptedException If interrupted while waiting for dot.
+     */
+    public <T> T run(GraphSpec spec, String type, Function<InputStream, T> function) throws IOException, InterruptedException {
+        return run(start(type), spec, function);
+    }
+    
+    /**
+     * Execute dot once to save a graph in several formats.
+     * Each format is written to its own file by dot, so the layout of the
+     * graph is only computed once. Error messages from dot are read while
+     * it runs and included in the exception if it fails.
+     * @param spec Graph in the dot language.
+     * @param types Output formats.
+     * @param files File to save each format to.
+     * @throws IOException If dot could not be executed or failed.
+     * @throws InterruptedException If interrupted while waiting for dot.
+     */
+    public void export(GraphSpec spec, List<String> types, List<File> files) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(path);
+        for (int i = 0; i < types.size(); i++) {
+            command.add("-T" + types.get(i));
+            command.add("-o" + files.get(i).getPath());
+        }
+        Process process = new ProcessBuilder(command).start();
+        Future<String> errors = WRITERS.submit(() -> readErrors(process));
+        run(process, spec, inputStream -> null);
+        String message = "";
+        try {
+            message = errors.get().trim();
+        } catch (ExecutionException e) {
+            // The messages are only used to explain a failure
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("dot exited with code " + process.exitValue() + (message.isEmpty() ? "" : ": " + message));
+        }
+    }
+    
+    /**
+     * Read a stream until it ends and close it.
+     */
+    private static Void discard(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) >= 0) {
+                // Discard
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Read the error output of a process until it ends, keeping only the
+     * end of it, where dot writes the error that made it fail.
+     */
+    private static String readErrors(Process process) throws IOException {
+        byte[] kept = new byte[ERROR_LIMIT];
+        long total = 0;
+        try (InputStream in = process.getErrorStream()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                // Kept as a ring of the last bytes
+                for (int i = 0; i < n; i++) {
+                    kept[(int) (total++ % ERROR_LIMIT)] = buffer[i];
+                }
+            }
+        }
+        if (total <= ERROR_LIMIT) return new String(kept, 0, (int) total, StandardCharsets.UTF_8);
+        int start = (int) (total % ERROR_LIMIT);
+        ByteArrayOutputStream text = new ByteArrayOutputStream(ERROR_LIMIT);
+        text.write(kept, start, ERROR_LIMIT - start);
+        text.write(kept, 0, start);
+        return new String(text.toByteArray(), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Send a graph spec to a dot process and read its output.
+     * The function receives the output as it is produced.
+     * @param process Process created by {@link #start(String)}.
+     * @param spec Graph in the dot language.
+     * @param function Function that accepts the output from dot and returns a value.
+     * @param <T> Type to create from the inputstream.
+     * @return Function applied to dot output.
+     * @throws IOException If dot could not be executed.
+     * @throws InterruptedException If interrupted while waiting for dot.
+     */
+    public static <T> T run(Process process, GraphSpec spec, Function<InputStream, T> function) throws IOException, InterruptedException {
+        Future<?> input = WRITERS.submit(() -> {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8))) {
+                spec.writeTo(out);
+            }
+            return null;
+        });
+        T t;
+        try (InputStream in = process.getInputStream()) {
+            t = function.apply(in);
+            // Read anything the function left so dot does not block
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) >= 0) {
+                // Discard
+            }
+        }
+        try {
+            input.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+        process.waitFor();
+        return t;
+    }
+    
+}
@@ -0,0 +1,430 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses a sentence with the production rules of one version of the
+ * grammar and builds the parse tree in a graph.
+ *
+ * This is an Earley parser, so any grammar can be used, including left
+ * recursive, ambiguous, and empty productions. The tables used to predict
+ * rules are built once when the parser is created. A symbol without a
+ * production rule is matched against the tokens of the sentence.
+ *
+ * Each item of the chart is stored as a long, with the item ID (a
+ * production value and the position in it) in the high bits and the
+ * token where the item started in the low bits.
+ */
+public class EarleyParser {
+    
+    private final int symbolCount;
+    // For each production value
+    private final int[] lhs;
+    private final int[][] rhs;
+    private final int[] base;
+    // For each item ID
+    private final int[] itemValue;
+    private final int[] itemNext;
+    // For each symbol
+    private final int[][] values;
+    private final boolean[] nullable;
+    private final int[][] closures;
+    
+    /**
+     * Build the prediction tables for a grammar.
+     * The tables only go up to the highest symbol of a rule, since the
+     * symbol table also has every symbol that was ever typed.
+     * @param index Index of the grammar.
+     */
+    public EarleyParser(GrammarIndex index) {
+        symbolCount = index.getSymbolLimit();
+        values = new int[symbolCount][];
+        List<Integer> owners = new ArrayList<>();
+        List<int[]> parts = new ArrayList<>();
+        for (int s = 0; s < symbolCount; s++) {
+            Rule rule = index.getSymbolRule(s);
+            if (rule == null) continue;
+            int count = rule.getParts().size();
+            values[s] = new int[count];
+            for (int i = 0; i < count; i++) {
+                values[s][i] = parts.size();
+                owners.add(s);
+                parts.add(rule.getPartSymbols(i));
+            }
+        }
+        lhs = owners.stream().mapToInt(Integer::intValue).toArray();
+        rhs = parts.toArray(new int[0][]);
+        base = new int[rhs.length];
+        int items = 0;
+        for (int v = 0; v < rhs.length; v++) {
+            base[v] = items;
+            items += rhs[v].length + 1;
+        }
+        itemValue = new int[items];
+        itemNext = new int[items];
+        for (int v = 0; v < rhs.length; v++) {
+            for (int dot = 0; dot <= rhs[v].length; dot++) {
+                itemValue[base[v] + dot] = v;
+                itemNext[base[v] + dot] = dot < rhs[v].length ? rhs[v][dot] : -1;
+            }
+        }
+        
+        // Symbols that can produce an empty value
+        nullable = new boolean[symbolCount];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int v = 0; v < rhs.length; v++) {
+                if (nullable[lhs[v]]) continue;
+                boolean empty = true;
+                for (int s : rhs[v]) {
+                    if (!isNullable(s)) {
+                        empty = false;
+                        break;
+                    }
+                }
+                if (empty) nullable[lhs[v]] = changed = true;
+            }
+        }
+        
+        // Every rule that is predicted along with each rule
+        closures = new int[symbolCount][];
+        int[] seen = new int[symbolCount];
+        Arrays.fill(seen, -1);
+        int[] queue = new int[symbolCount];
+        for (int s = 0; s < symbolCount; s++) {
+            if (values[s] == null) continue;
+            int size = 0;
+            queue[size++] = s;
+            seen[s] = s;
+            for (int q = 0; q < size; q++) {
+                for (int v : values[queue[q]]) {
+                    for (int x : rhs[v]) {
+                        if (hasRule(x) && seen[x] != s) {
+                            seen[x] = s;
+                            queue[size++] = x;
+                        }
+                        if (!isNullable(x)) break;
+                    }
+                }
+            }
+            closures[s] = Arrays.copyOf(queue, size);
+        }
+    }
+    
+    private boolean hasRule(int symbol) {
+        return symbol >= 0 && symbol < symbolCount && values[symbol] != null;
+    }
+    
+    private boolean isNullable(int symbol) {
+        return symbol >= 0 && symbol < symbolCount && nullable[symbol];
+    }
+    
+    private static long item(int id, int origin) {
+        return ((long) id << 32) | origin;
+    }
+    
+    private static int id(long item) {
+        return (int) (item >>> 32);
+    }
+    
+    private static int origin(long item) {
+        return (int) item;
+    }
+    
+    /**
+     * Parse a sentence.
+     * @param start Symbol ID of the rule to start from.
+     * @param tokens Symbol ID of each token, or -1 for a token that is not a
+     * symbol of the grammar.
+     * @return Chart with the result of the parse.
+     */
+    public Chart parse(int start, int[] tokens) {
+        int n = tokens.length;
+        ItemSet[] sets = new ItemSet[n + 1];
+        sets[0] = new ItemSet();
+        int[] predicted = new int[symbolCount];
+        Arrays.fill(predicted, -1);
+        if (hasRule(start)) predict(sets[0], start, 0, predicted);
+        int last = 0;
+        for (int i = 0; i <= n && sets[i] != null; i++) {
+            last = i;
+            ItemSet set = sets[i];
+            for (int k = 0; k < set.size; k++) {
+                long item = set.items[k];
+                int id = id(item);
+                int next = itemNext[id];
+                if (next < 0) {
+                    // Complete: advance every item that was waiting for this rule
+                    int origin = origin(item);
+                    ItemList waiting = sets[origin].waiting.get(lhs[itemValue[id]]);
+                    if (waiting == null) continue;
+                    for (int w = 0; w < waiting.size; w++) {
+                        long parent = waiting.items[w];
+                        add(set, id(parent) + 1, origin(parent));
+                    }
+                }
+                else if (hasRule(next)) {
+                    // Predict
+                    if (predicted[next] != i) predict(set, next, i, predicted);
+                    if (nullable[next]) add(set, id + 1, origin(item));
+                }
+                else if (i < n && tokens[i] == next) {
+                    // Scan
+                    if (sets[i + 1] == null) sets[i + 1] = new ItemSet();
+                    add(sets[i + 1], id + 1, origin(item));
+                }
+            }
+        }
+        return new Chart(start, sets, last);
+    }
+    
+    private void predict(ItemSet set, int symbol, int i, int[] predicted) {
+        for (int s : closures[symbol]) {
+            if (predicted[s] == i) continue;
+            predicted[s] = i;
+            for (int v : values[s]) {
+                add(set, base[v], i);
+            }
+        }
+    }
+    
+    private void add(ItemSet set, int id, int origin) {
+        long item = item(id, origin);
+        if (!set.add(item)) return;
+        int next = itemNext[id];
+        if (next < 0) set.completed.computeIfAbsent(lhs[itemValue[id]], s -> new ItemList()).add(item);
+        else if (hasRule(next)) set.waiting.computeIfAbsent(next, s -> new ItemList()).add(item);
+    }
+    
+    /**
+     * The items found while parsing a sentence.
+     */
+    public class Chart {
+        
+        private final int start;
+        private final ItemSet[] sets;
+        private final int last;
+        private int ambiguousNode = -1;
+        
+        private Chart(int start, ItemSet[] sets, int last) {
+            this.start = start;
+            this.sets = sets;
+            this.last = last;
+        }
+        
+        /**
+         * Returns whether the whole sentence was parsed.
+         * @return True if there is at least one parse tree.
+         */
+        public boolean isAccepted() {
+            return getRoots().size() > 0;
+        }
+        
+        /**
+         * Get the index of the token where parsing failed. This is the
+         * number of tokens if the sentence ended too early.
+         * @return Token index.
+         */
+        public int getFailure() {
+            return last;
+        }
+        
+        /**
+         * Get the first node that can be parsed in more than one way.
+         * @return Node ID or -1.
+         */
+        public int getAmbiguousNode() {
+            return ambiguousNode;
+        }
+        
+        private List<Long> getRoots() {
+            List<Long> roots = new ArrayList<>(1);
+            if (last != sets.length - 1) return roots;
+            ItemList done = sets[last].completed.get(start);
+            if (done == null) return roots;
+            for (int i = 0; i < done.size; i++) {
+                if (origin(done.items[i]) == 0) roots.add(done.items[i]);
+            }
+            return roots;
+        }
+        
+        /**
+         * Add the parse tree of an accepted sentence as the children of a
+         * node. When there is more than one tree, the first one found is
+         * added.
+         * @param graph Graph to add to.
+         * @param node Node for the start rule.
+         * @return Number of nodes that can be parsed in more than one way.
+         */
+        public int fill(GraphInfo graph, int node) {
+            List<Long> roots = getRoots();
+            if (roots.isEmpty()) return 0;
+            int ambiguous = 0;
+            if (roots.size() > 1) {
+                ambiguous++;
+                ambiguousNode = node;
+            }
+            Deque<Task> stack = new ArrayDeque<>();
+            stack.push(new Task(node, itemValue[id(roots.get(0))], 0, sets.length - 1, null));
+            while (!stack.isEmpty()) {
+                Task task = stack.pop();
+                int[] r = rhs[task.value];
+                int[] childValues = new int[r.length];
+                int[] childStarts = new int[r.length + 1];
+                childStarts[r.length] = task.end;
+                int pos = task.end;
+                // Find where each element starts, from the last to the first
+                for (int k = r.length - 1; k >= 0; k--) {
+                    int x = r[k];
+                    childValues[k] = -1;
+                    if (!hasRule(x)) {
+                        childStarts[k] = --pos;
+                        continue;
+                    }
+                    // The element is a completed rule that starts where the
+                    // item before it ends.
+                    long before = item(base[task.value] + k, task.start);
+                    ItemList done = sets[pos].completed.get(x);
+                    int options = 0;
+                    int chosen = -1;
+                    int cycle = -1;
+                    for (int i = 0; done != null && i < done.size; i++) {
+                        long item = done.items[i];
+                        int m = origin(item);
+                        if (!sets[m].contains(before)) continue;
+                        if (isCycle(task, x, m, pos)) {
+                            if (cycle < 0) cycle = m;
+                            continue;
+                        }
+                        if (options++ == 0) {
+                            childValues[k] = itemValue[id(item)];
+                            chosen = m;
+                        }
+                    }
+                    if (options > 1) {
+                        ambiguous++;
+                        if (ambiguousNode < 0) ambiguousNode = task.node;
+                    }
+                    // Without a choice that avoids a cycle the element is left as a leaf
+                    if (chosen >= 0) pos = chosen;
+                    else if (cycle >= 0) pos = cycle;
+                    childStarts[k] = pos;
+                }
+                for (int k = 0; k < r.length; k++) {
+                    int child = graph.newNode(r[k]);
+                    graph.addLink(task.node, child);
+                    if (childValues[k] >= 0) {
+                        stack.push(new Task(child, childValues[k], childStarts[k], childStarts[k + 1], task));
+                    }
+                }
+            }
+            return ambiguous;
+        }
+        
+        /**
+         * Returns whether using a rule for the given span would repeat a
+         * rule that is already being expanded for the same span.
+         */
+        private boolean isCycle(Task task, int symbol, int start, int end) {
+            for (Task t = task; t != null && t.start == start && t.end == end; t = t.parent) {
+                if (lhs[t.value] == symbol) return true;
+            }
+            return false;
+        }
+        
+    }
+    
+    /**
+     * A node of the parse tree whose children have not been added yet.
+     */
+    private static class Task {
+        
+        private final int node;
+        private final int value;
+        private final int start;
+        private final int end;
+        private final Task parent;
+        
+        private Task(int node, int value, int start, int end, Task parent) {
+            this.node = node;
+            this.value = value;
+            this.start = start;
+            this.end = end;
+            this.parent = parent;
+        }
+        
+    }
+    
+    /**
+     * A growable list of items.
+     */
+    private static class ItemList {
+        
+        long[] items = new long[4];
+        int size;
+        
+        void add(long item) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = item;
+        }
+        
+    }
+    
+    /**
+     * The items that end at one token, in the order they were added, with a
+     * hash table to find duplicates.
+     */
+    private static class ItemSet {
+        
+        private long[] items = new long[16];
+        private int size;
+        private long[] table = new long[32];
+        // Items waiting for each rule, and completed items of each rule
+        private final Map<Integer, ItemList> waiting = new HashMap<>();
+        private final Map<Integer, ItemList> completed = new HashMap<>();
+        
+        /**
+         * Add an item if it is not already in the set.
+         * @return True if the item was added.
+         */
+        boolean add(long item) {
+            if (contains(item)) return false;
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = item;
+            if (size * 2 > table.length) {
+                table = new long[table.length * 2];
+                for (int i = 0; i < size; i++) insert(items[i]);
+            }
+            else insert(item);
+            return true;
+        }
+        
+        boolean contains(long item) {
+            int mask = table.length - 1;
+            // Slots hold the item plus one so that zero marks an empty slot
+            for (int i = hash(item) & mask; table[i] != 0; i = (i + 1) & mask) {
+                if (table[i] == item + 1) return true;
+            }
+            return false;
+        }
+        
+        private void insert(long item) {
+            int mask = table.length - 1;
+            int i = hash(item) & mask;
+            while (table[i] != 0) i = (i + 1) & mask;
+            table[i] = item + 1;
+        }
+        
+        private static int hash(long item) {
+            long h = item * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+        
+    }
+    
+}
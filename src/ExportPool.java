@@ -0,0 +1,102 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Saves graphs to files using a fixed number of dot processes at once.
+ *
+ * Exports are queued and run in the background. Only a limited number of
+ * exports can be waiting at a time, after which {@link #submit} blocks until
+ * a worker is free, so a long list of exports does not keep every spec in
+ * memory.
+ */
+public class ExportPool {
+    
+    public static final int THREADS = Runtime.getRuntime().availableProcessors();
+    
+    private final ExecutorService workers;
+    private final Semaphore slots;
+    private int running;
+    
+    /**
+     * @param threads Number of dot processes that can run at once.
+     * @param queued Number of exports that can wait for a free worker.
+     */
+    public ExportPool(int threads, int queued) {
+        workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Dot export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        slots = new Semaphore(threads + queued);
+    }
+    
+    /**
+     * Queue a graph to be saved to a file. Blocks while the queue is full.
+     * @param dot Dot program.
+     * @param spec Graph to save.
+     * @param type Output format.
+     * @param file File to save to.
+     * @param failed Receives the exception if the export fails.
+     * @throws InterruptedException If interrupted while waiting for space
+     * in the queue.
+     */
+    public void submit(Dot dot, GraphSpec spec, String type, File file, Consumer<Exception> failed) throws InterruptedException {
+        submit(dot, spec, Collections.singletonList(type), Collections.singletonList(file), failed);
+    }
+    
+    /**
+     * Queue a graph to be saved in several formats by one dot process.
+     * Blocks while the queue is full.
+     * @param dot Dot program.
+     * @param spec Graph to save.
+     * @param types Output formats.
+     * @param files File to save each format to.
+     * @param failed Receives the exception if the export fails.
+     * @throws InterruptedException If interrupted while waiting for space
+     * in the queue.
+     * @see Dot#export(GraphSpec, List, List)
+     */
+    public void submit(Dot dot, GraphSpec spec, List<String> types, List<File> files, Consumer<Exception> failed) throws InterruptedException {
+        slots.acquire();
+        synchronized (this) {
+            running++;
+        }
+        workers.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                dot.export(spec, types, files);
+                LatencyStats.record(LatencyStats.DOT, start);
+            } catch (IOException | InterruptedException e) {
+                failed.accept(e);
+            } finally {
+                slots.release();
+                synchronized (this) {
+                    running--;
+                    notifyAll();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Wait until every queued export is finished.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void await() throws InterruptedException {
+        while (running > 0) wait();
+    }
+    
+    /**
+     * Stop the workers once the queued exports are finished.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+    
+}
@@ -0,0 +1,135 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A snapshot of the production rules for one version of the rule
+ * definitions. A grammar never changes once created, so it can be shared
+ * by every caller until the definitions are edited again. The parser and
+ * the lookup tables are built the first time they are requested, by the
+ * background parser or by commands, so that is synchronized.
+ */
+public class Grammar {
+    
+    private final int version;
+    private final List<Rule> rules;
+    private final SymbolTable symbols;
+    private GrammarIndex index;
+    private EarleyParser parser;
+    private UnitPaths unitPaths;
+    private SearchIndex valueSearch;
+    private final Map<Integer, SearchIndex> partSearches = new HashMap<>();
+    private List<Integer> ruleLines;
+    
+    public Grammar(int version, List<Rule> rules, SymbolTable symbols) {
+        this.version = version;
+        this.rules = Collections.unmodifiableList(rules);
+        this.symbols = symbols;
+    }
+    
+    public int getVersion() {
+        return version;
+    }
+    
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+    
+    /**
+     * Get the production rules in the order they are defined.
+     * Invalid rule definitions are included as null.
+     * @return List of production rules.
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+    
+    /**
+     * Get the lookup tables for this grammar. The index is built the first
+     * time it is requested.
+     * @return Grammar index.
+     */
+    public synchronized GrammarIndex getIndex() {
+        if (index == null) index = new GrammarIndex(rules, symbols);
+        return index;
+    }
+    
+    /**
+     * Get the search index of every production value. The index is built
+     * the first time it is requested.
+     * @return Index of values formatted with {@link Utils#formatRuleValue(String)}.
+     */
+    public synchronized SearchIndex getValueSearch() {
+        if (valueSearch == null) valueSearch = new SearchIndex(new ArrayList<>(getIndex().getValues()));
+        return valueSearch;
+    }
+    
+    /**
+     * Get the search index of the values of one production rule, in the
+     * order they are selected from.
+     * @param symbol Symbol ID of the production rule.
+     * @return Index of the values, or null if there is no such rule.
+     */
+    public synchronized SearchIndex getPartSearch(int symbol) {
+        Rule rule = getIndex().getSymbolRule(symbol);
+        if (rule == null) return null;
+        return partSearches.computeIfAbsent(symbol, s -> new SearchIndex(rule.getParts()));
+    }
+    
+    /**
+     * Get the chains of single producers above every value. The chains are
+     * built the first time they are requested.
+     * @return Chains of this grammar.
+     */
+    public synchronized UnitPaths getUnitPaths() {
+        if (unitPaths == null) unitPaths = new UnitPaths(getIndex());
+        return unitPaths;
+    }
+    
+    /**
+     * Get the parser for this grammar. The prediction tables are built the
+     * first time it is requested.
+     * @return Parser for this grammar.
+     */
+    public synchronized EarleyParser getParser() {
+        if (parser == null) parser = new EarleyParser(getIndex());
+        return parser;
+    }
+    
+    /**
+     * Gets the rule with the given number. The number is the line number
+     * displayed in the counting text area, which makes it 1-indexed.
+     * @param number Number of the rule.
+     * @return Rule with the given number, or null.
+     */
+    public Rule getRule(int number) {
+        return getIndex().getRule(number);
+    }
+    
+    /**
+     * Get the rule for the given non-terminal.
+     * Multiple definitions of the same production rule will be combined.
+     * @param prod Production rule, including the angle brackets.
+     * @return Full production rule.
+     */
+    public Rule getRule(String prod) {
+        return getIndex().getRule(prod);
+    }
+    
+    /**
+     * Get the line numbers of all valid production rules.
+     * @return List of line numbers in ascending order.
+     */
+    public synchronized List<Integer> getRuleLines() {
+        if (ruleLines == null) {
+            List<Integer> lines = new ArrayList<>();
+            rules.stream().filter(Objects::nonNull).map(Rule::getLine).forEach(lines::add);
+            ruleLines = Collections.unmodifiableList(lines);
+        }
+        return ruleLines;
+    }
+    
+}
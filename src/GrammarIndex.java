@@ -0,0 +1,124 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lookup tables for a single version of the production rules.
+ * The index is built once, after which finding a rule by name or number and
+ * finding the rules that produce a value are hash lookups.
+ */
+public class GrammarIndex {
+    
+    private final SymbolTable symbols;
+    private final List<Rule> numbered;
+    private final Map<Integer, Rule> rules;
+    private final int symbolLimit;
+    private final Map<String, Set<String>> producers;
+    
+    /**
+     * Build the index for a list of rules.
+     * @param list Rules read with the given symbol table.
+     * @param symbols Symbol table.
+     */
+    public GrammarIndex(List<Rule> list, SymbolTable symbols) {
+        this.symbols = symbols;
+        numbered = new ArrayList<>();
+        Map<Integer, List<Rule>> definitions = new LinkedHashMap<>();
+        producers = new HashMap<>();
+        for (Rule rule : list) {
+            if (rule == null) continue;
+            numbered.add(rule);
+            definitions.computeIfAbsent(rule.getSymbol(), s -> new ArrayList<>(1)).add(rule);
+            // Fill map of values -> set of production rules that create it
+            for (String part : rule.getParts()) {
+                producers.computeIfAbsent(Utils.formatRuleValue(part), s -> new HashSet<>(2)).add(rule.getFullName());
+            }
+        }
+        // The symbol table keeps every symbol ever typed, so the rules are
+        // kept by symbol in a map rather than an array of the whole table
+        rules = new HashMap<>();
+        definitions.forEach((symbol, defs) -> rules.put(symbol, merge(defs)));
+        symbolLimit = definitions.isEmpty() ? 0 : Collections.max(definitions.keySet()) + 1;
+    }
+    
+    /**
+     * Combine all definitions of the same production rule.
+     */
+    private static Rule merge(List<Rule> defs) {
+        Rule first = defs.get(0);
+        if (defs.size() == 1) return first.withLine(-1);
+        List<String> parts = new ArrayList<>();
+        List<int[]> partSymbols = new ArrayList<>();
+        for (Rule rule : defs) {
+            for (int i = 0; i < rule.getParts().size(); i++) {
+                parts.add(rule.getParts().get(i));
+                partSymbols.add(rule.getPartSymbols(i));
+            }
+        }
+        return new Rule(-1, first.getName(), parts, first.getSymbol(), partSymbols.toArray(new int[0][]));
+    }
+    
+    /**
+     * Gets the rule with the given number. The number is the line number
+     * displayed in the counting text area, which makes it 1-indexed.
+     * @param number Number of the rule.
+     * @return Rule with the given number, or null.
+     */
+    public Rule getRule(int number) {
+        if (number < 1 || number > numbered.size()) return null;
+        return numbered.get(number - 1);
+    }
+    
+    /**
+     * Get the rule for the given non-terminal.
+     * Multiple definitions of the same production rule are combined.
+     * @param prod Production rule, including the angle brackets.
+     * @return Full production rule or null.
+     */
+    public Rule getRule(String prod) {
+        return getSymbolRule(symbols.lookup(prod));
+    }
+    
+    /**
+     * Get the rule for the non-terminal with the given symbol ID.
+     * Multiple definitions of the same production rule are combined.
+     * @param symbol Symbol ID of the production rule.
+     * @return Full production rule or null.
+     */
+    public Rule getSymbolRule(int symbol) {
+        return rules.get(symbol);
+    }
+    
+    /**
+     * Get a number larger than the symbol ID of every production rule.
+     * @return Highest symbol ID of a rule plus one.
+     */
+    public int getSymbolLimit() {
+        return symbolLimit;
+    }
+    
+    /**
+     * Get the production rules that can create the given value.
+     * @param value Production value formatted with {@link Utils#formatRuleValue(String)}.
+     * @return Set of production rules including angle brackets, or null if
+     * no rule creates the value.
+     */
+    public Set<String> getProducers(String value) {
+        Set<String> set = producers.get(value);
+        return set == null ? null : Collections.unmodifiableSet(set);
+    }
+    
+    /**
+     * Get all production values in the grammar.
+     * @return Set of formatted production values.
+     */
+    public Set<String> getValues() {
+        return Collections.unmodifiableSet(producers.keySet());
+    }
+    
+}
@@ -0,0 +1,390 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the production rules for the text in the definitions box.
+ *
+ * The text is stored as a list of lines along with the blocks of lines that
+ * make up each rule. When the text is edited, only the blocks that touch the
+ * edited lines are parsed again. The result of the last edit is available
+ * as a {@link Grammar} which is shared until the text changes again.
+ */
+public class GrammarModel {
+    
+    public static final long MAP_WINDOW = 16L << 20;
+    public static final int DECODE_BUFFER = 64 << 10;
+    
+    private final SymbolTable symbols;
+    private List<String> lines;
+    private List<Block> blocks;
+    private int version;
+    private Grammar grammar;
+    
+    public GrammarModel() {
+        symbols = new SymbolTable();
+        lines = new ArrayList<>();
+        lines.add("");
+        blocks = new ArrayList<>();
+    }
+    
+    /**
+     * Get the current version of the rules. The version changes every time
+     * the text is changed.
+     * @return Version number.
+     */
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Get the table of symbols used by the rules. The same table is used for
+     * every version of the rules.
+     * @return Symbol table.
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+    
+    /**
+     * Get the rules for the current version of the text.
+     * @return Current grammar.
+     */
+    public Grammar getGrammar() {
+        if (grammar == null) {
+            List<Rule> rules = new ArrayList<>(blocks.size());
+            for (Block block : blocks) {
+                rules.add(block.rule);
+            }
+            grammar = new Grammar(version, rules, symbols);
+        }
+        return grammar;
+    }
+    
+    /**
+     * Replace the text of the model.
+     * @param text New text.
+     */
+    public void setText(String text) {
+        lines = new ArrayList<>(Arrays.asList(text.split("\n", -1)));
+        blocks = new ArrayList<>();
+        scanBlocks(lines, 0, lines.size(), blocks);
+        changed();
+    }
+    
+    /**
+     * Replace the text of the model with the contents of a file.
+     * @param file File with the production rules.
+     * @throws IOException If the file could not be read.
+     * @see #read(File)
+     */
+    public void load(File file) throws IOException {
+        setText(read(file));
+    }
+    
+    /**
+     * Read and parse a file of production rules without changing the model.
+     * This can be done on any thread, and the result is put in the model
+     * with {@link #setText(Loaded)}.
+     *
+     * The file is memory-mapped and decoded a piece at a time straight into
+     * lines, so the whole text is never held as one string. Control
+     * characters other than tabs are left out.
+     * @param file File with the production rules, in UTF-8.
+     * @return Lines and rules of the file.
+     * @throws IOException If the file could not be read.
+     */
+    public Loaded read(File file) throws IOException {
+        List<String> lines = readLines(file);
+        List<Block> blocks = new ArrayList<>();
+        scanBlocks(lines, 0, lines.size(), blocks);
+        return new Loaded(lines, blocks);
+    }
+    
+    /**
+     * Replace the text of the model with a file that was read.
+     * @param loaded Result of {@link #read(File)}.
+     */
+    public void setText(Loaded loaded) {
+        lines = new ArrayList<>(loaded.lines);
+        blocks = new ArrayList<>(loaded.blocks);
+        changed();
+    }
+    
+    /**
+     * Split a file into lines, mapping a window of the file at a time.
+     */
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                                                       .onMalformedInput(CodingErrorAction.REPLACE)
+                                                       .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(DECODE_BUFFER);
+        StringBuilder line = new StringBuilder();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            boolean last = false;
+            while (!last) {
+                long length = Math.min(MAP_WINDOW, size - position);
+                last = position + length == size;
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                CoderResult result;
+                do {
+                    result = decoder.decode(bytes, chars, last);
+                    if (result.isError()) result.throwException();
+                    splitLines(chars, line, lines);
+                } while (result.isOverflow());
+                // A character cut off by the end of the window is decoded
+                // again from the start of the next one
+                position += bytes.position();
+            }
+            while (decoder.flush(chars).isOverflow()) splitLines(chars, line, lines);
+            splitLines(chars, line, lines);
+        }
+        lines.add(line.toString());
+        return lines;
+    }
+    
+    /**
+     * Move decoded characters into lines, keeping the unfinished last line.
+     */
+    private static void splitLines(CharBuffer chars, StringBuilder line, List<String> lines) {
+        char[] array = chars.array();
+        int end = chars.position();
+        int start = 0;
+        for (int i = 0; i < end; i++) {
+            char c = array[i];
+            if (c >= ' ' && c != 0x7f || c == '\t') continue;
+            line.append(array, start, i - start);
+            start = i + 1;
+            if (c == '\n') {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+            // Other control characters are dropped, as the text box does
+        }
+        line.append(array, start, end - start);
+        chars.clear();
+    }
+    
+    /**
+     * Update the model after the text has been edited.
+     * The old text must be the text the model currently holds. The range of
+     * the edit is found by comparing the two strings, and only the rules on
+     * the lines inside that range are parsed again.
+     * @param oldText Text before the edit.
+     * @param newText Text after the edit.
+     */
+    public void update(String oldText, String newText) {
+        int oldLength = oldText.length();
+        int newLength = newText.length();
+        int max = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix)) prefix++;
+        if (prefix == oldLength && prefix == newLength) return;
+        int suffix = 0;
+        while (suffix < max - prefix && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+        // Lines that were replaced by the edit
+        int first = countLines(oldText, 0, prefix);
+        int oldLast = first + countLines(oldText, prefix, oldLength - suffix);
+        int from = newText.lastIndexOf('\n', prefix - 1) + 1;
+        int to = newText.indexOf('\n', newLength - suffix);
+        if (to < 0) to = newLength;
+        replaceLines(first, oldLast, newText.substring(from, to));
+    }
+    
+    /**
+     * Update the model after the lines it was given have been edited into a
+     * new text. The old lines must be the lines the model currently holds,
+     * such as the lines of a file that was loaded. Whole lines are compared
+     * from both ends, so the old lines never need to be joined into one
+     * string, and only the rules on the lines in between are parsed again.
+     * @param oldLines Lines before the edit.
+     * @param newText Text after the edit.
+     */
+    public void update(List<String> oldLines, String newText) {
+        int count = oldLines.size();
+        // Lines before the edit, and the position in the new text after them
+        int first = 0;
+        int from = 0;
+        while (first < count - 1) {
+            String line = oldLines.get(first);
+            int end = from + line.length();
+            if (end >= newText.length() || newText.charAt(end) != '\n' || !newText.startsWith(line, from)) break;
+            from = end + 1;
+            first++;
+        }
+        // Lines after the edit, and the position in the new text before them
+        int oldLast = count - 1;
+        int to = newText.length();
+        while (oldLast > first) {
+            String line = oldLines.get(oldLast);
+            int start = to - line.length();
+            if (start - 1 < from || newText.charAt(start - 1) != '\n' || !newText.startsWith(line, start)) break;
+            to = start - 1;
+            oldLast--;
+        }
+        String replaced = newText.substring(from, to);
+        if (first == oldLast && replaced.equals(oldLines.get(first))) return;
+        replaceLines(first, oldLast, replaced);
+    }
+    
+    /**
+     * Replace a range of lines and parse the rules that touch them again.
+     * @param first First line that was replaced.
+     * @param oldLast Last line that was replaced.
+     * @param text Text of the lines that replace them.
+     */
+    private void replaceLines(int first, int oldLast, String text) {
+        List<String> replaced = lines.subList(first, oldLast + 1);
+        replaced.clear();
+        replaced.addAll(Arrays.asList(text.split("\n", -1)));
+        int newLast = first + replaced.size() - 1;
+        
+        // The first rule that could be changed is the one that contains the
+        // first edited line or ends right before it.
+        int k = 0;
+        while (k < blocks.size() && blocks.get(k).end < first) k++;
+        int scan = first;
+        if (k < blocks.size() && blocks.get(k).start < scan) scan = blocks.get(k).start;
+        List<Block> parsed = new ArrayList<>();
+        int sync = scanBlocks(lines, scan, newLast + 1, parsed);
+        // Blocks after the sync line are the same as before, only moved.
+        int delta = newLast - oldLast;
+        int j = k;
+        while (j < blocks.size() && blocks.get(j).start < sync - delta) j++;
+        for (int i = j; i < blocks.size(); i++) {
+            blocks.get(i).move(delta);
+        }
+        List<Block> old = blocks.subList(k, j);
+        old.clear();
+        old.addAll(parsed);
+        changed();
+    }
+    
+    private void changed() {
+        version++;
+        grammar = null;
+    }
+    
+    /**
+     * Read rule blocks starting at the given line.
+     * A rule is ended once a blank line is encountered or the start of a new
+     * rule is reached. Scanning stops at the first line after the given limit
+     * where a rule could not continue, because past that point the blocks are
+     * unchanged.
+     * @param lines Lines of the text.
+     * @param line Line to start at. This must not be in the middle of a rule.
+     * @param limit Line after which scanning may stop.
+     * @param out List to add the blocks to.
+     * @return Line where scanning stopped.
+     */
+    private int scanBlocks(List<String> lines, int line, int limit, List<Block> out) {
+        StringBuilder builder = new StringBuilder();
+        boolean started = false;
+        int start = -1;
+        for (int i = line; i < lines.size(); i++) {
+            String s = lines.get(i);
+            boolean blank = s.trim().isEmpty();
+            boolean rule = s.contains("::=");
+            if (i >= limit && (blank || rule)) {
+                if (started) out.add(new Block(start, i, builder.toString()));
+                return i;
+            }
+            if (blank && started) {
+                out.add(new Block(start, i, builder.toString()));
+                builder.setLength(0);
+                started = false;
+            }
+            if (rule) {
+                if (started) {
+                    out.add(new Block(start, i, builder.toString()));
+                    builder.setLength(0);
+                }
+                else started = true;
+                start = i;
+            }
+            if (started) builder.append(s);
+        }
+        if (started) out.add(new Block(start, lines.size(), builder.toString()));
+        return lines.size();
+    }
+    
+    /**
+     * Count the newlines in a section of a string.
+     */
+    private static int countLines(String s, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == '\n') n++;
+        }
+        return n;
+    }
+    
+    /**
+     * The lines and rules of a file, read with {@link #read(File)}.
+     */
+    public class Loaded {
+        
+        private final List<String> lines;
+        private final List<Block> blocks;
+        
+        private Loaded(List<String> lines, List<Block> blocks) {
+            this.lines = Collections.unmodifiableList(lines);
+            this.blocks = blocks;
+        }
+        
+        /**
+         * Get the lines of the file, without line breaks.
+         * @return Lines of the file.
+         */
+        public List<String> getLines() {
+            return lines;
+        }
+        
+    }
+    
+    /**
+     * The lines that make up a single rule definition.
+     */
+    private class Block {
+        
+        private int start;
+        private int end;
+        private Rule rule;
+        
+        /**
+         * @param start First line of the rule (0-indexed).
+         * @param end Line after the last line of the rule.
+         * @param text Combined text of the lines.
+         */
+        private Block(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.rule = Rule.parse(start + 1, text, symbols);
+        }
+        
+        private void move(int delta) {
+            if (delta == 0) return;
+            start += delta;
+            end += delta;
+            if (rule != null) rule = rule.withLine(start + 1);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,195 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Parses the text of the definitions box on a background thread.
+ *
+ * Every change to the text gets a new version number. The text is parsed a
+ * short time after the last change, so typing quickly only parses once, and
+ * each parse uses the newest text. Each result is passed on with the
+ * version of the text it was parsed from, so a result that is already out
+ * of date can be ignored. {@link #get()} waits for the newest version, so
+ * commands always use rules that match the text.
+ *
+ * The model is only used by the background thread.
+ */
+public class GrammarWorker {
+    
+    public static final long DEBOUNCE = 150;
+    
+    private final GrammarModel model;
+    private final ScheduledExecutorService worker;
+    private final BiConsumer<Integer, Grammar> parsed;
+    // Used only by the worker thread. The model holds either the lines of
+    // a loaded file or the text it was last updated with.
+    private List<String> modelLines;
+    private String modelText = "";
+    // Guarded by this
+    private String text = "";
+    private int version;
+    private int parsedVersion;
+    private Grammar grammar;
+    private ScheduledFuture<?> pending;
+    private boolean loading;
+    
+    /**
+     * @param model Model to parse the text with.
+     * @param parsed Receives each version of the text that is parsed and
+     * its grammar, on the background thread.
+     */
+    public GrammarWorker(GrammarModel model, BiConsumer<Integer, Grammar> parsed) {
+        this.model = model;
+        this.parsed = parsed;
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Grammar parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        grammar = model.getGrammar();
+    }
+    
+    /**
+     * Get the version of the newest text.
+     * @return Version number.
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Set the text to parse. It is parsed after a short delay, unless the
+     * text changes again first.
+     * @param text New text.
+     * @return Version of the text.
+     */
+    public synchronized int setText(String text) {
+        this.text = text;
+        version++;
+        if (pending != null) pending.cancel(false);
+        pending = worker.schedule(this::parse, DEBOUNCE, TimeUnit.MILLISECONDS);
+        return version;
+    }
+    
+    /**
+     * Get the rules for the newest text, waiting for it to be parsed.
+     * @return Current grammar.
+     */
+    public synchronized Grammar get() {
+        if (parsedVersion < version) {
+            if (pending != null) pending.cancel(false);
+            pending = null;
+            if (!loading) worker.execute(this::parse);
+            boolean interrupted = false;
+            while (parsedVersion < version) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        return grammar;
+    }
+    
+    /**
+     * Parse the newest text if it was not parsed yet.
+     */
+    private void parse() {
+        String text;
+        int version;
+        synchronized (this) {
+            // A file being loaded finishes its own version
+            if (loading || parsedVersion == this.version) return;
+            text = this.text;
+            version = this.version;
+        }
+        long start = System.nanoTime();
+        Grammar result = null;
+        try {
+            if (modelLines != null) model.update(modelLines, text);
+            else if (modelText == null) model.setText(text);
+            else model.update(modelText, text);
+            modelLines = null;
+            modelText = text;
+            result = model.getGrammar();
+            result.getRuleLines();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            modelLines = null;
+            modelText = null;
+        }
+        LatencyStats.record(LatencyStats.PARSE, start);
+        finish(version, result);
+    }
+    
+    /**
+     * Publish the result of a version and wake up anything waiting for it.
+     */
+    private void finish(int version, Grammar result) {
+        synchronized (this) {
+            if (version == this.version) loading = false;
+            if (result != null) grammar = result;
+            parsedVersion = Math.max(parsedVersion, version);
+            notifyAll();
+        }
+        if (result != null) parsed.accept(version, result);
+    }
+    
+    /**
+     * Read a file of production rules in the background and use them as
+     * the new text. Later changes are compared with the lines of the file,
+     * which are never joined into one string, so the text must not be
+     * changed until it is the same as the file.
+     * @param file File to read.
+     * @param loaded Receives the file on the background thread once its
+     * rules are in use.
+     * @param failed Receives the exception if the file could not be read or
+     * parsed. The previous rules stay in use.
+     */
+    public void load(File file, Consumer<GrammarModel.Loaded> loaded, Consumer<Throwable> failed) {
+        int version;
+        synchronized (this) {
+            if (pending != null) pending.cancel(false);
+            pending = null;
+            version = ++this.version;
+            loading = true;
+        }
+        worker.execute(() -> {
+            long start = System.nanoTime();
+            GrammarModel.Loaded result = null;
+            Grammar grammar = null;
+            Throwable error = null;
+            try {
+                result = model.read(file);
+                model.setText(result);
+                modelLines = result.getLines();
+                modelText = null;
+                grammar = model.getGrammar();
+                grammar.getRuleLines();
+                LatencyStats.record(LatencyStats.PARSE, start);
+            } catch (IOException | RuntimeException | Error e) {
+                error = e;
+                grammar = null;
+                if (result != null) {
+                    // The model may be left part way through the file
+                    modelLines = null;
+                    modelText = null;
+                }
+            } finally {
+                // Anything waiting for the rules must not wait forever
+                finish(version, grammar);
+            }
+            if (error != null) failed.accept(error);
+            else loaded.accept(result);
+        });
+    }
+    
+}
@@ -0,0 +1,244 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Records the changes made to a graph so that commands can be undone and
+ * redone.
+ *
+ * Each command is one step. A step keeps a log of the small changes the
+ * command made to the graph: nodes created, links set or removed, and
+ * nodes deleted along with their child lists. Undoing a step reverses the
+ * log, and redoing it plays the log again, so a step costs memory for what
+ * changed rather than for a copy of the graph. Nodes inserted into and
+ * removed from the relevant nodes are logged the same way.
+ */
+public class GraphHistory {
+    
+    public static final int LIMIT = 10000;
+    
+    private static final int CREATED = 0;
+    private static final int LINKED = 1;
+    private static final int UNLINKED = 2;
+    private static final int REMOVED = 3;
+    private static final int RELEVANT_INSERTED = 4;
+    private static final int RELEVANT_REMOVED = 5;
+    
+    private final int limit;
+    private final Deque<Step> undo = new ArrayDeque<>();
+    private final Deque<Step> redo = new ArrayDeque<>();
+    private Step current;
+    private boolean applying;
+    
+    /**
+     * @param limit Number of steps that can be undone.
+     */
+    public GraphHistory(int limit) {
+        this.limit = limit;
+    }
+    
+    /**
+     * Start recording a command.
+     */
+    public void begin() {
+        current = new Step();
+    }
+    
+    /**
+     * Finish recording a command. Nothing is kept if the command did not
+     * change anything, otherwise the steps that were undone are dropped.
+     */
+    public void end() {
+        Step step = current;
+        current = null;
+        if (step == null || step.size == 0) return;
+        undo.push(step);
+        redo.clear();
+        if (undo.size() > limit) undo.removeLast();
+    }
+    
+    public boolean canUndo() {
+        return !undo.isEmpty();
+    }
+    
+    public boolean canRedo() {
+        return !redo.isEmpty();
+    }
+    
+    /**
+     * Undo the last step.
+     * @param graph Graph the step was recorded from.
+     * @param relevant Relevant nodes the step was recorded from.
+     * @return False if there is nothing to undo.
+     */
+    public boolean undo(GraphInfo graph, RelevantNodes relevant) {
+        if (undo.isEmpty()) return false;
+        Step step = undo.pop();
+        applying = true;
+        try {
+            int[] log = step.log;
+            int end = step.size;
+            while (end > 0) {
+                int start = end - log[end - 1];
+                switch (log[start]) {
+                    case CREATED:
+                        graph.removeNewest(log[start + 1]);
+                        break;
+                    case LINKED:
+                        graph.unlink(log[start + 1]);
+                        if (log[start + 2] >= 0) graph.insertLink(log[start + 2], log[start + 1], log[start + 3]);
+                        break;
+                    case UNLINKED:
+                        graph.insertLink(log[start + 2], log[start + 1], log[start + 3]);
+                        break;
+                    case REMOVED:
+                        graph.restoreNode(log[start + 1], log[start + 2], Arrays.copyOfRange(log, start + 4, start + 4 + log[start + 3]));
+                        break;
+                    case RELEVANT_INSERTED:
+                        relevant.removeAt(log[start + 1]);
+                        break;
+                    case RELEVANT_REMOVED:
+                        relevant.insert(log[start + 1], log[start + 2]);
+                        break;
+                }
+                end = start;
+            }
+        } finally {
+            applying = false;
+        }
+        redo.push(step);
+        return true;
+    }
+    
+    /**
+     * Redo the last step that was undone.
+     * @param graph Graph the step was recorded from.
+     * @param relevant Relevant nodes the step was recorded from.
+     * @return False if there is nothing to redo.
+     */
+    public boolean redo(GraphInfo graph, RelevantNodes relevant) {
+        if (redo.isEmpty()) return false;
+        Step step = redo.pop();
+        applying = true;
+        try {
+            int[] log = step.log;
+            int start = 0;
+            while (start < step.size) {
+                switch (log[start]) {
+                    case CREATED:
+                        graph.newNode(log[start + 2]);
+                        break;
+                    case LINKED:
+                        graph.addLink(log[start + 4], log[start + 1]);
+                        break;
+                    case UNLINKED:
+                        graph.unlink(log[start + 1]);
+                        break;
+                    case REMOVED:
+                        graph.removeNode(log[start + 1]);
+                        break;
+                    case RELEVANT_INSERTED:
+                        relevant.insert(log[start + 1], log[start + 2]);
+                        break;
+                    case RELEVANT_REMOVED:
+                        relevant.removeAt(log[start + 1]);
+                        break;
+                }
+                start += length(log, start);
+            }
+        } finally {
+            applying = false;
+        }
+        undo.push(step);
+        return true;
+    }
+    
+    private static int length(int[] log, int start) {
+        switch (log[start]) {
+            case CREATED:
+                return 4;
+            case LINKED:
+                return 6;
+            case UNLINKED:
+                return 5;
+            case RELEVANT_INSERTED:
+            case RELEVANT_REMOVED:
+                return 4;
+            default:
+                return 5 + log[start + 3];
+        }
+    }
+    
+    /**
+     * A node was created.
+     */
+    public void created(int node, int symbol) {
+        if (isRecording()) current.add(CREATED, node, symbol);
+    }
+    
+    /**
+     * A node was linked to a parent, and was removed from its old parent.
+     */
+    public void linked(int node, int oldParent, int oldIndex, int parent) {
+        if (isRecording()) current.add(LINKED, node, oldParent, oldIndex, parent);
+    }
+    
+    /**
+     * A node was removed from the child list of its parent.
+     */
+    public void unlinked(int node, int parent, int index) {
+        if (isRecording()) current.add(UNLINKED, node, parent, index);
+    }
+    
+    /**
+     * A node was deleted, and its children were left without a parent.
+     */
+    public void removed(int node, int symbol, int[] children) {
+        if (!isRecording()) return;
+        int[] record = new int[children.length + 3];
+        record[0] = node;
+        record[1] = symbol;
+        record[2] = children.length;
+        System.arraycopy(children, 0, record, 3, children.length);
+        current.add(REMOVED, record);
+    }
+    
+    /**
+     * A node was inserted into the relevant nodes.
+     */
+    public void relevantInserted(int index, int node) {
+        if (isRecording()) current.add(RELEVANT_INSERTED, index, node);
+    }
+    
+    /**
+     * A node was removed from the relevant nodes.
+     */
+    public void relevantRemoved(int index, int node) {
+        if (isRecording()) current.add(RELEVANT_REMOVED, index, node);
+    }
+    
+    private boolean isRecording() {
+        return current != null && !applying;
+    }
+    
+    /**
+     * The changes made by one command. Each change is stored as its type,
+     * its values, and its total length, so the log can be read backwards.
+     */
+    private static class Step {
+        
+        private int[] log = new int[8];
+        private int size;
+        
+        private void add(int type, int... values) {
+            int length = values.length + 2;
+            if (size + length > log.length) log = Arrays.copyOf(log, Math.max(log.length * 2, size + length));
+            log[size] = type;
+            System.arraycopy(values, 0, log, size + 1, values.length);
+            log[size + length - 1] = length;
+            size += length;
+        }
+        
+    }
+    
+}
@@ -1,21 +1,72 @@
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Holds a collection of nodes as well as all the parent-child relationships
  * for the graph.
+ *
+ * Nodes are stored in arrays indexed by node ID. Every node keeps its parent
+ * and a list of its children in the order they were linked, so deleting or
+ * unlinking a node only touches the nodes involved. IDs are handed out in
+ * increasing order and are never reused after a node is deleted.
+ *
+ * The lines of the dot spec for each node and edge are kept once they are
+ * built. A node line is only built again when the node changes between
+ * showing and hiding its ID, and an edge line when the node is linked to a
+ * different parent.
+ *
+ * A node can be collapsed to hide its children when the graph is shown.
+ * Collapsing only changes how the graph is shown, so it is not part of the
+ * history or the journal, and exports always show every node.
  */
 public class GraphInfo {
     
-    private Map<Integer, String> nodes;
-    private Map<Integer, Integer> parents;
+    private SymbolTable symbols;
+    private int[] values;
+    private int[] parents;
+    private int[][] children;
+    private int[] childCounts;
+    private String[] labelledSpecs;
+    private String[] plainSpecs;
+    private String[] edgeSpecs;
+    private boolean[] collapsed;
+    private int collapsedCount;
+    private int next;
+    private int size;
+    private GraphHistory history;
+    private SessionJournal journal;
     
-    public GraphInfo() {
-        nodes = new HashMap<>();
-        parents = new HashMap<>();
+    /**
+     * @param symbols Table used to look up the value of nodes.
+     */
+    public GraphInfo(SymbolTable symbols) {
+        this.symbols = symbols;
+        values = new int[64];
+        parents = new int[64];
+        children = new int[64][];
+        childCounts = new int[64];
+        labelledSpecs = new String[64];
+        plainSpecs = new String[64];
+        edgeSpecs = new String[64];
+        collapsed = new boolean[64];
+    }
+    
+    /**
+     * Set the history that records every change to the graph.
+     * @param history History to record to, or null to stop recording.
+     */
+    public void setHistory(GraphHistory history) {
+        this.history = history;
+    }
+    
+    /**
+     * Set the journal that saves every change to the graph.
+     * @param journal Journal to write to, or null to stop writing.
+     */
+    public void setJournal(SessionJournal journal) {
+        this.journal = journal;
     }
     
     /**
@@ -24,20 +75,150 @@ public class GraphInfo {
      * @return Node ID
      */
     public int newNode(String name) {
-        int i = nodes.size();
-        nodes.put(i, name);
+        return newNode(symbols.intern(name));
+    }
+    
+    /**
+     * Create a new node.
+     * @param symbol Symbol ID of the node value.
+     * @return Node ID
+     */
+    public int newNode(int symbol) {
+        grow(next + 1);
+        int i = next++;
+        values[i] = symbol;
+        parents[i] = -1;
+        children[i] = null;
+        childCounts[i] = 0;
+        labelledSpecs[i] = null;
+        plainSpecs[i] = null;
+        edgeSpecs[i] = null;
+        collapsed[i] = false;
+        size++;
+        if (history != null) history.created(i, symbol);
+        if (journal != null) journal.created(symbol);
         return i;
     }
     
+    /**
+     * Make room for node IDs below a limit.
+     */
+    private void grow(int limit) {
+        if (limit > values.length) {
+            int capacity = Math.max(values.length * 2, limit);
+            values = Arrays.copyOf(values, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            children = Arrays.copyOf(children, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+            labelledSpecs = Arrays.copyOf(labelledSpecs, capacity);
+            plainSpecs = Arrays.copyOf(plainSpecs, capacity);
+            edgeSpecs = Arrays.copyOf(edgeSpecs, capacity);
+            collapsed = Arrays.copyOf(collapsed, capacity);
+        }
+    }
+    
+    /**
+     * Set aside the IDs below a limit as deleted nodes, so that the next new
+     * node gets the limit as its ID. This is used to load a saved graph,
+     * whose nodes are then put back with {@link #restoreNode}.
+     * @param limit Node ID limit.
+     */
+    public void reserve(int limit) {
+        if (limit <= next) return;
+        grow(limit);
+        for (int i = next; i < limit; i++) {
+            values[i] = -1;
+            parents[i] = -1;
+            children[i] = null;
+            childCounts[i] = 0;
+            labelledSpecs[i] = null;
+            plainSpecs[i] = null;
+            edgeSpecs[i] = null;
+            collapsed[i] = false;
+        }
+        next = limit;
+    }
+    
+    /**
+     * Returns whether a node with the given ID exists.
+     * @param node Node ID
+     * @return True if the node exists.
+     */
+    public boolean exists(int node) {
+        return node >= 0 && node < next && values[node] >= 0;
+    }
+    
+    /**
+     * Get the number of nodes in the graph.
+     * @return Number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the ID that the next new node will have. Every existing node has
+     * an ID less than this.
+     * @return Node ID limit.
+     */
+    public int getLimit() {
+        return next;
+    }
+    
     /**
      * Set a parent-child link between nodes.
      * Nodes can only have one parent, this will overwrite an existing
-     * parent on a node.
+     * parent on a node. Links to nodes that do not exist are ignored.
      * @param parent Parent node ID
      * @param child Child node ID
      */
     public void addLink(int parent, int child) {
-        parents.put(child, parent);
+        if (parent == child || !exists(parent) || !exists(child)) return;
+        int oldParent = parents[child];
+        int oldIndex = indexOf(oldParent, child);
+        detach(child);
+        insert(parent, child, childCounts[parent]);
+        if (history != null) history.linked(child, oldParent, oldIndex, parent);
+        if (journal != null) journal.linked(parent, child);
+    }
+    
+    /**
+     * Set a parent-child link at a position in the child list of the parent.
+     * This is used to put back a link that was removed. The child must not
+     * have a parent.
+     * @param parent Parent node ID
+     * @param child Child node ID
+     * @param index Position in the child list.
+     */
+    public void insertLink(int parent, int child, int index) {
+        if (parent == child || !exists(parent) || !exists(child) || parents[child] >= 0) return;
+        index = Math.min(index, childCounts[parent]);
+        insert(parent, child, index);
+        if (journal != null) journal.inserted(parent, child, index);
+    }
+    
+    private void insert(int parent, int child, int index) {
+        int count = childCounts[parent];
+        int[] list = children[parent];
+        if (list == null) list = children[parent] = new int[2];
+        else if (count == list.length) list = children[parent] = Arrays.copyOf(list, count * 2);
+        System.arraycopy(list, index, list, index + 1, count - index);
+        list[index] = child;
+        childCounts[parent] = count + 1;
+        parents[child] = parent;
+        edgeSpecs[child] = null;
+    }
+    
+    /**
+     * Get the position of a node in the child list of its parent.
+     * @return Index of the child, or -1.
+     */
+    private int indexOf(int parent, int child) {
+        if (parent < 0) return -1;
+        for (int i = 0; i < childCounts[parent]; i++) {
+            if (children[parent][i] == child) return i;
+        }
+        return -1;
     }
     
     /**
@@ -46,7 +227,34 @@ public class GraphInfo {
      * @return Parent the node was linked to or null.
      */
     public Integer unlink(int node) {
-        return parents.remove(node);
+        if (!exists(node)) return null;
+        int index = indexOf(parents[node], node);
+        int parent = detach(node);
+        if (parent < 0) return null;
+        if (history != null) history.unlinked(node, parent, index);
+        if (journal != null) journal.unlinked(node);
+        return parent;
+    }
+    
+    /**
+     * Remove a node from the child list of its parent.
+     * @return Parent the node was linked to or -1.
+     */
+    private int detach(int node) {
+        int parent = parents[node];
+        if (parent < 0) return -1;
+        int[] list = children[parent];
+        int count = childCounts[parent];
+        for (int i = 0; i < count; i++) {
+            if (list[i] == node) {
+                System.arraycopy(list, i + 1, list, i, count - i - 1);
+                break;
+            }
+        }
+        childCounts[parent] = count - 1;
+        parents[node] = -1;
+        edgeSpecs[node] = null;
+        return parent;
     }
     
     /**
@@ -55,26 +263,144 @@ public class GraphInfo {
      * @return Parent the node was linked to or null.
      */
     public Integer delete(int node) {
-        nodes.remove(node);
-        Integer r = parents.remove(node);
-        List<Integer> children = parents.entrySet()
-                                        .stream()
-                                        .filter(e -> e.getValue() == node)
-                                        .map(Map.Entry::getKey)
-                                        .collect(Collectors.toList());
-        for (int n : children) {
-            delete(n);
+        Integer r = unlink(node);
+        if (!exists(node)) return r;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = node;
+        while (top > 0) {
+            int n = stack[--top];
+            int count = childCounts[n];
+            if (top + count > stack.length) stack = Arrays.copyOf(stack, (top + count) * 2);
+            for (int i = 0; i < count; i++) {
+                stack[top++] = children[n][i];
+            }
+            removeNode(n);
         }
         return r;
     }
     
+    /**
+     * Delete a single node. Its children are left without a parent.
+     * Deleting a subtree with {@link #delete(int)} deletes every node in it
+     * this way, starting from the top.
+     * @param node Node ID
+     */
+    public void removeNode(int node) {
+        if (!exists(node)) return;
+        if (parents[node] >= 0) unlink(node);
+        int count = childCounts[node];
+        if (history != null) history.removed(node, values[node], Arrays.copyOf(children[node] == null ? new int[0] : children[node], count));
+        for (int i = 0; i < count; i++) {
+            parents[children[node][i]] = -1;
+            edgeSpecs[children[node][i]] = null;
+        }
+        values[node] = -1;
+        children[node] = null;
+        childCounts[node] = 0;
+        labelledSpecs[node] = null;
+        plainSpecs[node] = null;
+        edgeSpecs[node] = null;
+        setCollapsed(node, false);
+        size--;
+        if (journal != null) journal.removed(node);
+    }
+    
+    /**
+     * Bring back a node that was deleted, along with its child list. This
+     * is used to undo {@link #removeNode(int)}. The children must exist and
+     * have no parent.
+     * @param node Node ID
+     * @param symbol Symbol ID of the node value.
+     * @param list Child node IDs in order.
+     */
+    public void restoreNode(int node, int symbol, int[] list) {
+        if (node < 0 || node >= next || values[node] >= 0) return;
+        values[node] = symbol;
+        parents[node] = -1;
+        children[node] = list.length == 0 ? null : Arrays.copyOf(list, list.length);
+        childCounts[node] = list.length;
+        for (int child : list) {
+            parents[child] = node;
+            edgeSpecs[child] = null;
+        }
+        size++;
+        if (journal != null) journal.restored(node, symbol, list);
+    }
+    
+    /**
+     * Remove the newest node so that its ID is given out again. This is used
+     * to undo {@link #newNode(int)}. The node must have no links.
+     * @param node Node ID, which must be the newest node.
+     */
+    public void removeNewest(int node) {
+        if (node != next - 1) return;
+        if (values[node] >= 0) size--;
+        setCollapsed(node, false);
+        values[node] = -1;
+        next--;
+        if (journal != null) journal.dropped(node);
+    }
+    
     /**
      * Get the string value of a node.
      * @param node Node ID
      * @return Node string
      */
     public String getNode(int node) {
-        return nodes.get(node);
+        if (!exists(node)) return null;
+        return symbols.getName(values[node]);
+    }
+    
+    /**
+     * Get the symbol ID of a node.
+     * @param node Node ID
+     * @return Symbol ID or -1 if the node does not exist.
+     */
+    public int getSymbol(int node) {
+        if (!exists(node)) return -1;
+        return values[node];
+    }
+    
+    /**
+     * Get the parent of a node.
+     * @param node Node ID
+     * @return Parent node ID or -1.
+     */
+    public int getParent(int node) {
+        if (!exists(node)) return -1;
+        return parents[node];
+    }
+    
+    /**
+     * Get the children of a node in the order they were linked.
+     * @param node Node ID
+     * @return Child node IDs.
+     */
+    public int[] getChildren(int node) {
+        if (!exists(node) || childCounts[node] == 0) return new int[0];
+        return Arrays.copyOf(children[node], childCounts[node]);
+    }
+    
+    /**
+     * Collapse a node so that its children are hidden when the graph is
+     * shown, or expand it to show them again.
+     * @param node Node ID
+     * @param collapse True to collapse the node, false to expand it.
+     */
+    public void setCollapsed(int node, boolean collapse) {
+        if (!exists(node) || collapsed[node] == collapse) return;
+        collapsed[node] = collapse;
+        collapsedCount += collapse ? 1 : -1;
+    }
+    
+    /**
+     * Returns whether a node is collapsed.
+     * @param node Node ID
+     * @return True if the children of the node are hidden.
+     */
+    public boolean isCollapsed(int node) {
+        return exists(node) && collapsed[node];
     }
     
     /**
@@ -82,14 +408,30 @@ public class GraphInfo {
      * @return
      */
     public Set<Integer> getIncomplete() {
-        Set<Integer> n = nodes.keySet()
-                              .stream()
-                              .filter(i -> Utils.nonEmpty(nodes.get(i), "<", ">"))
-                              .collect(Collectors.toSet());
-        n.removeAll(parents.values());
+        Set<Integer> n = new LinkedHashSet<>();
+        for (int i = 0; i < next; i++) {
+            if (childCounts[i] == 0 && symbols.isNonTerminal(values[i])) n.add(i);
+        }
         return n;
     }
     
+    /**
+     * Get the label that is displayed for a node.
+     * @param node Node ID
+     * @param extra If true, non-terminal nodes are labeled with their ID.
+     * @param full If true, all nodes are labeled with their ID.
+     * @return Node label or null if the node does not exist.
+     */
+    public String getLabel(int node, boolean extra, boolean full) {
+        if (!exists(node)) return null;
+        String value = symbols.getName(values[node]);
+        return isLabelled(node, extra, full) ? node + ": " + value : value;
+    }
+    
+    private boolean isLabelled(int node, boolean extra, boolean full) {
+        return (extra || full) && (symbols.isNonTerminal(values[node]) || full);
+    }
+    
     /**
      * Get a representation of the graph that can be passed to dot to draw
      * the graph.
@@ -101,30 +443,281 @@ public class GraphInfo {
      * @return Graph string in dot language.
      */
     public String getGraphSpec(boolean extra, boolean full, int relevant) {
+        return getSpec(extra, full, relevant).toString();
+    }
+    
+    /**
+     * Get a representation of the graph that can be passed to dot without
+     * building the whole spec as one string. The result does not change if
+     * the graph is changed afterwards.
+     * @param extra If true, displays the node ID next to nodes, and draws a
+     * box around the relevant node.
+     * @param full Same as extra but will also display IDs on terminal symbols.
+     * If true, extra will also be true.
+     * @param relevant ID of relevant node.
+     * @return Graph spec.
+     */
+    public GraphSpec getSpec(boolean extra, boolean full, int relevant) {
+        long start = System.nanoTime();
         extra |= full;
-        StringBuilder builder = new StringBuilder();
-        builder.append("graph G {\n");
+        String[] lines = new String[size * 2];
+        int count = 0;
         
-        for (Map.Entry<Integer, String> entry : nodes.entrySet()) {
-            String label = extra && (Utils.nonEmpty(entry.getValue(), "<", ">") || full) ? entry.getKey() + ": " + entry.getValue() : entry.getValue();
-            String shape = extra && relevant >= 0 && relevant == entry.getKey() ? "box" : "plain";
-            builder.append(entry.getKey())
-                   .append(" [label=\"")
-                   .append(label)
-                   .append("\" shape=")
-                   .append(shape)
-                   .append("]\n");
+        for (int i = 0; i < next; i++) {
+            if (values[i] < 0) continue;
+            lines[count++] = getNodeSpec(i, isLabelled(i, extra, full), extra && relevant == i);
         }
         
-        for (Map.Entry<Integer, Integer> entry : parents.entrySet()) {
-            builder.append(entry.getValue())
-                   .append(" -- ")
-                   .append(entry.getKey())
-                   .append('\n');
+        for (int i = 0; i < next; i++) {
+            if (values[i] < 0 || parents[i] < 0) continue;
+            String edge = edgeSpecs[i];
+            if (edge == null) edge = edgeSpecs[i] = parents[i] + " -- " + i + "\n";
+            lines[count++] = edge;
         }
         
-        builder.append("}\n");
-        return builder.toString();
+        GraphSpec spec = new GraphSpec(lines, count);
+        LatencyStats.record(LatencyStats.SPEC, start);
+        return spec;
+    }
+    
+    /**
+     * Get a representation of the part of the graph that is shown. The
+     * children of collapsed nodes are replaced by a summary node that shows
+     * how many there are.
+     *
+     * With a number of levels, only the area around the relevant node is
+     * included: the subtree of the relevant node, and its ancestors up to
+     * that many levels above it. The other children of each ancestor are
+     * included, but their children are summarized. Building this spec only
+     * visits the nodes near the relevant node, however large the graph is.
+     * @param extra If true, displays the node ID next to nodes, and draws a
+     * box around the relevant node.
+     * @param full Same as extra but will also display IDs on terminal symbols.
+     * If true, extra will also be true.
+     * @param relevant ID of relevant node.
+     * @param levels Number of ancestor levels to include, or -1 to include
+     * the whole graph.
+     * @return Graph spec.
+     */
+    public GraphSpec getViewSpec(boolean extra, boolean full, int relevant, int levels) {
+        if (levels < 0 || !exists(relevant)) {
+            if (collapsedCount == 0) return getSpec(extra, full, relevant);
+            levels = -1;
+        }
+        long start = System.nanoTime();
+        extra |= full;
+        SpecBuilder spec = new SpecBuilder(extra, full, relevant);
+        if (levels < 0) {
+            for (int i = 0; i < next; i++) {
+                if (values[i] >= 0 && parents[i] < 0) spec.subtree(i);
+            }
+            addCycles(spec);
+        }
+        else {
+            // Ancestors from the relevant node up, stopping if they loop
+            int[] chain = new int[levels + 1];
+            int length = 0;
+            chain[length++] = relevant;
+            int top = relevant;
+            while (length <= levels && parents[top] >= 0 && !contains(chain, length, parents[top])) {
+                top = chain[length++] = parents[top];
+            }
+            if (parents[top] >= 0 && !contains(chain, length, parents[top])) {
+                // The rest of the tree above the top ancestor
+                spec.add("a" + top + " [label=\"...\" shape=plain]\n");
+                spec.add("a" + top + " -- " + top + "\n");
+            }
+            spec.path(top, relevant);
+            spec.subtree(relevant);
+        }
+        GraphSpec result = spec.build();
+        LatencyStats.record(LatencyStats.SPEC, start);
+        return result;
+    }
+    
+    private static boolean contains(int[] array, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (array[i] == value) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Add the nodes that have no root above them, which happens when links
+     * form a cycle. Each cycle is added starting from one of its nodes.
+     */
+    private void addCycles(SpecBuilder spec) {
+        // 1 if a root is above the node, 2 if not, 3 while it is checked
+        byte[] state = new byte[next];
+        int[] path = new int[16];
+        for (int i = 0; i < next; i++) {
+            if (values[i] < 0 || state[i] != 0) continue;
+            int length = 0;
+            int n = i;
+            byte result;
+            while (true) {
+                if (n < 0) {
+                    result = 1;
+                    break;
+                }
+                if (state[n] == 3) {
+                    result = 2;
+                    spec.subtree(n);
+                    break;
+                }
+                if (state[n] != 0) {
+                    result = state[n];
+                    break;
+                }
+                state[n] = 3;
+                if (length == path.length) path = Arrays.copyOf(path, length * 2);
+                path[length++] = n;
+                n = parents[n];
+            }
+            for (int j = 0; j < length; j++) {
+                state[path[j]] = result;
+            }
+        }
+    }
+    
+    /**
+     * Collects the lines of a spec for part of the graph.
+     */
+    private class SpecBuilder {
+        
+        private final boolean extra;
+        private final boolean full;
+        private final int relevant;
+        private String[] lines = new String[64];
+        private int count;
+        private int[] stack = new int[16];
+        // Links can form a cycle, so each node is only added once
+        private final BitSet added = new BitSet();
+        
+        private SpecBuilder(boolean extra, boolean full, int relevant) {
+            this.extra = extra;
+            this.full = full;
+            this.relevant = relevant;
+        }
+        
+        private void add(String line) {
+            if (count == lines.length) lines = Arrays.copyOf(lines, count * 2);
+            lines[count++] = line;
+        }
+        
+        private void node(int node) {
+            added.set(node);
+            add(getNodeSpec(node, isLabelled(node, extra, full), extra && relevant == node));
+        }
+        
+        private void edge(int child) {
+            String edge = edgeSpecs[child];
+            if (edge == null) edge = edgeSpecs[child] = parents[child] + " -- " + child + "\n";
+            add(edge);
+        }
+        
+        /**
+         * Add a summary node in place of the children of a node.
+         */
+        private void summary(int node) {
+            int hidden = childCounts[node];
+            add("s" + node + " [label=\"" + hidden + (hidden == 1 ? " child" : " children") + "\" shape=box style=dashed]\n");
+            add(node + " -- s" + node + "\n");
+        }
+        
+        /**
+         * Add a node and every node below it that is not hidden by a
+         * collapsed node. Nodes that were already added are skipped, but
+         * the links to them are still added.
+         */
+        private void subtree(int root) {
+            if (added.get(root)) return;
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int n = stack[--top];
+                node(n);
+                int count = childCounts[n];
+                if (count == 0) continue;
+                if (collapsed[n]) {
+                    summary(n);
+                    continue;
+                }
+                // Dot orders siblings by where they first appear
+                for (int i = 0; i < count; i++) {
+                    edge(children[n][i]);
+                }
+                if (top + count > stack.length) stack = Arrays.copyOf(stack, (top + count) * 2);
+                // Pushed in reverse so children are added in order
+                for (int i = count - 1; i >= 0; i--) {
+                    int child = children[n][i];
+                    if (!added.get(child)) stack[top++] = child;
+                }
+            }
+        }
+        
+        /**
+         * Add the ancestors of a node from the top one down, along with the
+         * other children of each ancestor. The node itself is not added.
+         */
+        private void path(int top, int node) {
+            int depth = 0;
+            for (int n = node; n != top; n = parents[n]) {
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = parents[n];
+            }
+            for (int i = depth - 1; i >= 0; i--) {
+                int ancestor = stack[i];
+                int next = i > 0 ? stack[i - 1] : node;
+                node(ancestor);
+                if (collapsed[ancestor]) {
+                    // Only the way down to the node is shown
+                    edge(next);
+                    continue;
+                }
+                for (int j = 0; j < childCounts[ancestor]; j++) {
+                    int child = children[ancestor][j];
+                    edge(child);
+                    if (child == next) continue;
+                    node(child);
+                    if (childCounts[child] > 0) summary(child);
+                }
+            }
+        }
+        
+        private GraphSpec build() {
+            return new GraphSpec(lines, count);
+        }
+        
+    }
+    
+    /**
+     * Get the line of the dot spec for a node.
+     * Lines for unboxed nodes are kept until the node is deleted. Only the
+     * relevant node is boxed, so its line is always built again.
+     * @param node Node ID
+     * @param labelled Whether the label includes the node ID.
+     * @param boxed Whether to draw a box around the node.
+     * @return Node line in dot language.
+     */
+    private String getNodeSpec(int node, boolean labelled, boolean boxed) {
+        if (boxed) return buildNodeSpec(node, labelled, "box");
+        String[] specs = labelled ? labelledSpecs : plainSpecs;
+        String spec = specs[node];
+        if (spec == null) spec = specs[node] = buildNodeSpec(node, labelled, "plain");
+        return spec;
+    }
+    
+    private String buildNodeSpec(int node, boolean labelled, String shape) {
+        String value = symbols.getName(values[node]);
+        StringBuilder builder = new StringBuilder();
+        builder.append(node).append(" [label=\"");
+        if (labelled) builder.append(node).append(": ");
+        return builder.append(value)
+                      .append("\" shape=")
+                      .append(shape)
+                      .append("]\n")
+                      .toString();
     }
     
 }
@@ -0,0 +1,59 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * A graph in the dot language, stored as the separate lines of the spec
+ * instead of one large string.
+ *
+ * The lines are shared with the graph they were taken from, so creating a
+ * spec is cheap. A spec does not change when the graph changes afterwards,
+ * so it can be written from another thread.
+ */
+public class GraphSpec {
+    
+    private static final String HEADER = "graph G {\n";
+    private static final String FOOTER = "}\n";
+    
+    private final String[] lines;
+    private final int count;
+    
+    /**
+     * @param lines Node and edge lines, each ending with a newline.
+     * @param count Number of lines to use.
+     */
+    public GraphSpec(String[] lines, int count) {
+        this.lines = lines;
+        this.count = count;
+    }
+    
+    /**
+     * Write the spec.
+     * @param out Destination.
+     * @throws IOException If the spec could not be written.
+     */
+    public void writeTo(Writer out) throws IOException {
+        out.write(HEADER);
+        for (int i = 0; i < count; i++) {
+            out.write(lines[i]);
+        }
+        out.write(FOOTER);
+    }
+    
+    /**
+     * Get the spec as a single string.
+     * @return Graph string in dot language.
+     */
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeTo(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+    
+}
@@ -1,20 +1,33 @@
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.FXCollections;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.Dragboard;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.input.TransferMode;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
 import javafx.scene.text.Font;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 import java.io.File;
 import java.io.IOException;
@@ -36,26 +49,55 @@ public class Grapher extends Application {
     private HBox dotInfo;
     private Label dotLabel;
     private TextField dotPath;
+    private Label renderLabel;
+    private ChoiceBox<String> renderChoice;
     
     private HBox defArea;
-    private TextArea count;
+    private RuleGutter count;
     private TextArea defs;
-    private ProductionRuleReader ruleReader;
+    private ListView<String> fileView;
+    private RuleGutter optionCount;
+    private TextArea options;
+    private GrammarModel grammar;
+    private GrammarWorker parser;
     
     private TextField input;
     
     private ScrollPane view;
     private ImageView image;
+    private TreeCanvas treeCanvas;
+    private VectorCanvas vectorCanvas;
+    private RenderCache renderCache;
+    private RenderService renderer;
+    private ExportPool exporter;
+    
+    private StackPane center;
+    private Label stats;
+    private Timeline statsTimer;
     
     public static final int DEFAULT = 0;
     public static final int SELECT = 1;
     private int state = DEFAULT;
     
-    private GraphInfo graphInfo;
-    private String originalRules;
-    private Rule selecting;
-    private int parent;
-    private Deque<Integer> relevant = new LinkedList<>();
+    public static final String RENDER_DOT = "dot";
+    public static final String RENDER_VECTOR = "vector";
+    public static final String RENDER_BUILT_IN = "built-in";
+    public static final Font TREE_FONT = new Font("Times New Roman", 14);
+    public static final long RENDER_CACHE_SIZE = 64L << 20;
+    public static final int EXPORT_QUEUE = 16;
+    public static final String SESSION_DIR = "session";
+    public static final String RULES_FONT = "-fx-font-family: 'Courier New'; -fx-font-size: 12;";
+    
+    private CommandEngine engine;
+    // A loaded file is shown one line per row until it is edited
+    private boolean viewingFile;
+    private List<Integer> ruleLines = Collections.emptyList();
+    // Detached while a loaded file is shown, since the box does not hold
+    // its text
+    private ChangeListener<String> textListener;
+    // How the tree was last drawn
+    private boolean drawExtra = true;
+    private boolean drawFull;
     
     private Map<String, FileChooser.ExtensionFilter> fileTypes;
     
@@ -69,6 +111,22 @@ public class Grapher extends Application {
         
         stage.setScene(scene);
         stage.show();
+        openSession();
+    }
+    
+    @Override
+    public void stop() {
+        engine.closeSession();
+    }
+    
+    /**
+     * Load the tree from the last time the application was open, and keep
+     * saving changes to it. The session is kept in the directory given by
+     * the session parameter, or in the session directory.
+     */
+    private void openSession() {
+        File dir = new File(getParameters().getNamed().getOrDefault("session", SESSION_DIR));
+        if (engine.openSession(new SessionJournal(dir, grammar.getSymbols()))) redraw(true);
     }
     
     private void initView() {
@@ -81,20 +139,33 @@ public class Grapher extends Application {
         dotInfo = new HBox(10);
         dotLabel = new Label("Path to dot:");
         dotPath = new TextField(getDotPath());
-        dotInfo.getChildren().addAll(dotLabel, dotPath);
+        // Choice between drawing with dot or drawing directly
+        renderLabel = new Label("Renderer:");
+        renderChoice = new ChoiceBox<>();
+        renderChoice.getItems().addAll(RENDER_DOT, RENDER_VECTOR, RENDER_BUILT_IN);
+        renderChoice.setValue(RENDER_DOT);
+        dotInfo.getChildren().addAll(dotLabel, dotPath, renderLabel, renderChoice);
         main.setTop(dotInfo);
         
         // Where the production rules are entered
         defArea = new HBox();
-        count = new TextArea();
-        count.setFont(new Font("Courier New", 12));
-        count.setPrefColumnCount(3);
-        count.setEditable(false);
         defs = new TextArea();
         defs.setFont(new Font("Courier New", 12));
+        count = new RuleGutter(defs);
         count.prefHeightProperty().bind(defs.heightProperty());
-        count.scrollTopProperty().bindBidirectional(defs.scrollTopProperty());
         defArea.getChildren().addAll(count, defs);
+        // Only the visible lines of a loaded file are laid out
+        fileView = new ListView<>();
+        fileView.setStyle(RULES_FONT);
+        fileView.setCellFactory(list -> new FileLine());
+        fileView.prefWidthProperty().bind(defs.widthProperty().add(count.widthProperty()));
+        // The options of the selected rule
+        options = new TextArea();
+        options.setFont(defs.getFont());
+        options.setEditable(false);
+        optionCount = new RuleGutter(options);
+        optionCount.prefHeightProperty().bind(options.heightProperty());
+        options.prefWidthProperty().bind(defs.widthProperty());
         main.setLeft(defArea);
         
         // Where commands are entered
@@ -107,8 +178,21 @@ public class Grapher extends Application {
         view.setMinWidth(300);
         view.setPrefHeight(300);
         image = new ImageView();
+        treeCanvas = new TreeCanvas(view);
+        vectorCanvas = new VectorCanvas(view, TREE_FONT);
         view.setContent(image);
-        main.setCenter(view);
+        
+        // Time taken by each phase, shown over the graph
+        stats = new Label();
+        stats.setFont(new Font("Courier New", 12));
+        stats.setStyle("-fx-background-color: rgba(255, 255, 255, 0.85); -fx-padding: 4;");
+        stats.setMouseTransparent(true);
+        stats.setVisible(false);
+        StackPane.setAlignment(stats, Pos.TOP_LEFT);
+        statsTimer = new Timeline(new KeyFrame(Duration.seconds(1), event -> stats.setText(LatencyStats.summary())));
+        statsTimer.setCycleCount(Timeline.INDEFINITE);
+        center = new StackPane(view, stats);
+        main.setCenter(center);
     }
     
     /**
@@ -120,15 +204,7 @@ public class Grapher extends Application {
         Map<String, String> named = getParameters().getNamed();
         if (named.containsKey("dot")) return named.get("dot");
         // Load path from file
-        File file = new File("dot.txt");
-        if (file.exists()) {
-            try {
-                return new String(Files.readAllBytes(file.toPath())).trim();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        return "";
+        return Dot.defaultPath();
     }
     
     private void loadExtensions() {
@@ -143,497 +219,351 @@ public class Grapher extends Application {
     }
     
     private void initEvents() {
-        ruleReader = new ProductionRuleReader();
-        graphInfo = new GraphInfo();
-        relevant = new LinkedList<>();
+        grammar = new GrammarModel();
+        parser = new GrammarWorker(grammar, (version, rules) -> Platform.runLater(() -> showRules(version, rules)));
+        engine = new CommandEngine(parser::get, grammar.getSymbols(), Utils::error);
+        renderCache = new RenderCache(RENDER_CACHE_SIZE);
+        renderer = new RenderService(renderCache);
+        exporter = new ExportPool(ExportPool.THREADS, EXPORT_QUEUE);
         
-        // Show line counts in the sidebar for production rules
-        defs.textProperty().addListener((observable, oldValue, newValue) -> {
+        // Parse the production rules in the background as they are typed
+        textListener = (observable, oldValue, newValue) -> {
             if (state != DEFAULT) return;
-            List<Integer> lines = ruleReader.fromString(newValue)
-                                            .stream()
-                                            .filter(Objects::nonNull)
-                                            .map(Rule::getLine)
-                                            .collect(Collectors.toList());
-            updateCount(lines);
-        });
+            parser.setText(newValue);
+        };
+        defs.textProperty().addListener(textListener);
         // Allow a file to be dragged into the definitions
-        defs.setOnMouseClicked(event -> {
-            if (event.isControlDown()) {
-                FileChooser fc = new FileChooser();
-                File file = fc.showOpenDialog(stage);
-                if (file != null) loadFile(file);
+        allowLoad(defs);
+        allowLoad(fileView);
+        // A loaded file is put in the box once it is edited
+        fileView.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                event.consume();
+                editFile(fileView.getSelectionModel().getSelectedIndex());
             }
-            event.consume();
         });
-        defs.setOnDragOver(event -> {
-            if (event.getDragboard().hasFiles()) {
-                event.acceptTransferModes(TransferMode.COPY);
+        fileView.addEventHandler(MouseEvent.MOUSE_CLICKED, event -> {
+            if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) {
+                editFile(fileView.getSelectionModel().getSelectedIndex());
             }
-            event.consume();
-        });
-        defs.setOnDragDropped(event -> {
-            Dragboard db = event.getDragboard();
-            if (db.hasFiles()) {
-                List<File> files = db.getFiles();
-                if (files.size() == 1) {
-                    if (loadFile(files.get(0))) {
-                        event.setDropCompleted(true);
-                        event.consume();
-                    }
-                }
-            }
-            event.setDropCompleted(false);
-            event.consume();
         });
         
         // All possible commands
         input.setOnKeyPressed(event -> {
+            int before = engine.getState();
+            String text = input.getText();
+            int draw;
+            // F3 shows or hides the time taken by each phase
+            if (event.getCode() == KeyCode.F3) {
+                event.consume();
+                toggleStats();
+                return;
+            }
+            // F4 saves the time taken by each phase
+            if (event.getCode() == KeyCode.F4) {
+                event.consume();
+                saveStats();
+                return;
+            }
             // Quick: right arrow selects last option
             if (event.getCode() == KeyCode.RIGHT) {
-                if (state == SELECT && input.getText().isEmpty()) {
-                    makeSelection(selecting.getParts().size());
-                    redraw(true);
-                }
+                draw = engine.right(text);
             }
             // Quick: left arrow select first option
             else if (event.getCode() == KeyCode.LEFT) {
-                if (state == SELECT && input.getText().isEmpty()) {
-                    makeSelection(1);
-                    redraw(true);
-                }
+                draw = engine.left(text);
             }
             // Up arrow cancels selection or moves to next relevant node
             else if (event.getCode() == KeyCode.UP) {
-                if (state == SELECT) {
-                    makeSelection(-1);
-                }
-                else {
-                    if (relevant.size() > 0) {
-                        relevant.removeFirst();
-                    }
-                    redraw(true);
-                }
+                draw = engine.up();
             }
             // Tab tries to quick-select option
             else if (event.getCode() == KeyCode.TAB) {
                 event.consume();
-                String text = input.getText().trim();
-                if (state == SELECT && !text.isEmpty()) {
-                    List<Integer> options = new LinkedList<>();
-                    for (int i = 0; i < selecting.getParts().size(); i++) {
-                        if (Utils.matchesSearch(text, selecting.getParts().get(i))) {
-                            options.add(i);
-                        }
-                    }
-                    if (options.size() == 1) {
-                        input.setText("");
-                        makeSelection(options.get(0) + 1);
-                        redraw(true);
-                    }
-                }
-                else if (state == DEFAULT && !text.isEmpty()) {
-                    input.setText("");
-                    simplePath(getRelevant(), text);
-                }
+                draw = engine.tab(text);
+                if (!text.trim().isEmpty() && (before == CommandEngine.DEFAULT || engine.getState() != before)) input.setText("");
             }
+            // Down arrow selects the relevant node or finds a simple path
             else if (event.getCode() == KeyCode.DOWN) {
-                String text = input.getText().trim().toLowerCase();
-                String[] parts = text.split(" +");
-                // If no command in box, down arrow selects relevant node.
-                // If making a selection it selects the last option.
-                if (text.isEmpty()) {
-                    if (state == DEFAULT) {
-                        startSelection(getRelevant());
-                    }
-                    else if (state == SELECT) {
-                        makeSelection(selecting.getParts().size());
-                    }
-                    redraw(true);
-                }
-                // Find simple path from relevant node to specified value
-                else {
+                if (!text.trim().isEmpty()) {
                     event.consume();
                     input.setText("");
-                    simplePath(getRelevant(), String.join(" ", parts));
                 }
+                draw = engine.down(text);
             }
             else if (event.getCode() == KeyCode.ENTER) {
                 event.consume();
-                String text = input.getText().trim().toLowerCase();
-                String[] parts = text.split(" +");
                 input.setText("");
-                if (text.isEmpty()) return;
-    
-                if (state == SELECT) {
-                    // Minus will cancel selection
-                    if (text.startsWith("-")) {
-                        // Cancel select
-                        makeSelection(-1);
-                        return;
-                    }
-                    // Select node
-                    int line = Integer.parseInt(text);
-                    makeSelection(line);
-                    redraw(true);
-                    return;
-                }
-    
-                // Check prefixes first
-                if (text.equals("r")) {
-                    // Redraw with node numbers
-                    redraw(true);
-                }
-                else if (text.equals("o")) {
-                    // Draw without node numbers
-                    redraw(false);
-                }
-                else if (text.equals("f")) {
-                    // Draw with node numbers (including terminal symbols)
-                    redraw(true, true);
-                }
-                else if (text.startsWith("+")) {
-                    // New node
-                    text = text.substring(1).trim();
-                    if (text.isEmpty()) return;
-                    int r = Integer.parseInt(text);
-                    Rule rule = getRule(r);
-                    if (rule == null) {
-                        Utils.error("Invalid Index", "Could not get production rule " + r);
-                        return;
-                    }
-                    relevant.addLast(graphInfo.newNode(rule.getFullName()));
-                    redraw(true);
-                }
-                else if (text.startsWith("~")) {
-                    // Unlink node
-                    text = text.substring(1).trim();
-                    if (text.isEmpty()) return;
-                    int n = Integer.parseInt(text);
-                    graphInfo.unlink(n);
-                    refreshRelevant();
-                    redraw(true);
-                }
-                else if (text.startsWith("=")) {
-                    // Set relevant node
-                    text = text.substring(1).trim();
-                    if (text.isEmpty()) return;
-                    int n = Integer.parseInt(text);
-                    if (n < 0) return;
-                    relevant.remove(n);
-                    relevant.addFirst(n);
-                    redraw(true);
-                }
-                else if (text.startsWith("-")) {
-                    // Delete node (and children)
-                    text = text.substring(1).trim();
-                    if (text.isEmpty()) return;
-                    int n = Integer.parseInt(text);
-                    graphInfo.delete(n);
-                    refreshRelevant();
-                    redraw(true);
-                }
-                else if (text.startsWith("*")) {
-                    // Recalculate relevant nodes
-                    refreshRelevant();
-                    redraw(true);
-                }
-                else if (parts.length == 1) {
-                    // Select node
-                    int n = Integer.parseInt(parts[0]);
-                    startSelection(n);
-                }
-                else if (parts.length == 2) {
-                    // Set parent-child link
-                    int parent = Integer.parseInt(parts[0]);
-                    int child = Integer.parseInt(parts[1]);
-                    graphInfo.addLink(parent, child);
-                    refreshRelevant();
-                    redraw(true);
-                }
-                else if (parts.length == 3) {
-                    if (parts[0].equals("s")) {
-                        // Find a simple path between a node and value
-                        int n = Integer.parseInt(parts[1]);
-                        simplePath(n, parts[2]);
-                    }
-                    else {
-                        // Set parent -- child link
-                        if (parts[1].equals("--") || parts[1].equals("->")) {
-                            int parent = Integer.parseInt(parts[0]);
-                            int child = Integer.parseInt(parts[2]);
-                            graphInfo.addLink(parent, child);
-                            refreshRelevant();
-                            redraw(true);
-                        }
-                    }
-                }
+                draw = engine.enter(text);
+            }
+            else return;
+            showState(before);
+            if (draw != CommandEngine.NO_DRAW) {
+                redraw(draw != CommandEngine.DRAW, draw == CommandEngine.DRAW_FULL);
             }
         });
         
+        renderChoice.valueProperty().addListener((observable, oldValue, newValue) -> redraw(drawExtra, drawFull));
+        
         view.setOnMouseClicked(event -> {
             if (event.getButton() == MouseButton.SECONDARY) {
                 event.consume();
-                saveImage();
+                if (event.isControlDown()) saveAll();
+                else saveImage();
             }
         });
     }
     
-    private boolean loadFile(File file) {
-        try {
-            defs.setText(new String(Files.readAllBytes(file.toPath())));
-            return true;
-        } catch (IOException e) {
-            Utils.error("Error", "An exception occurred while reading the file.");
-            e.printStackTrace();
-        }
-        return false;
+    /**
+     * Let a file of production rules be loaded into a view of the rules
+     * with Ctrl+Click or by dragging it in.
+     * @param node View of the rules.
+     */
+    private void allowLoad(Node node) {
+        node.setOnMouseClicked(event -> {
+            if (event.isControlDown()) {
+                FileChooser fc = new FileChooser();
+                File file = fc.showOpenDialog(stage);
+                if (file != null) loadFile(file);
+            }
+            event.consume();
+        });
+        node.setOnDragOver(event -> {
+            if (event.getDragboard().hasFiles()) {
+                event.acceptTransferModes(TransferMode.COPY);
+            }
+            event.consume();
+        });
+        node.setOnDragDropped(event -> {
+            Dragboard db = event.getDragboard();
+            if (db.hasFiles()) {
+                List<File> files = db.getFiles();
+                if (files.size() == 1) {
+                    if (loadFile(files.get(0))) {
+                        event.setDropCompleted(true);
+                        event.consume();
+                    }
+                }
+            }
+            event.setDropCompleted(false);
+            event.consume();
+        });
     }
     
     /**
-     * Adds a relevant node if non-null and >= 0
-     * @param i Next relevant node
+     * Load production rules from a file.
+     * The file is read and parsed in the background. Once it is parsed, the
+     * rules can be used right away, and the file is shown one line per row
+     * until it is edited.
+     * @param file File to load.
+     * @return True if the file exists and will be loaded.
      */
-    private void addRelevant(Integer i) {
-        if (i == null || i < 0) return;
-        relevant.addLast(i);
+    private boolean loadFile(File file) {
+        if (!file.isFile()) {
+            Utils.error("Error", "An exception occurred while reading the file.");
+            return false;
+        }
+        // The text must not change while the file is read
+        defs.setEditable(false);
+        parser.load(file, loaded -> Platform.runLater(() -> showFile(loaded)), e -> {
+            e.printStackTrace();
+            Platform.runLater(() -> {
+                Utils.error("Error", "An exception occurred while reading the file.");
+                defs.setEditable(true);
+            });
+        });
+        return true;
     }
     
     /**
-     * Get the next relevant node.
-     * @return Relevant node number or -1.
+     * Show the rule numbers once a version of the text is parsed, unless the
+     * text has changed again since then.
+     * @param version Version of the text that was parsed.
+     * @param rules Rules parsed from that version.
      */
-    private int getRelevant() {
-        if (relevant.size() > 0) return relevant.peekFirst();
-        return -1;
+    private void showRules(int version, Grammar rules) {
+        if (version != parser.getVersion() || state != DEFAULT) return;
+        updateCount(rules.getRuleLines());
     }
     
     /**
-     * Refresh the list of relevant nodes.
+     * Use the rules of a file that was read, and show its lines in place of
+     * the box. Only the rows that are visible are laid out, so the text of
+     * the file is not copied into the box unless it is edited.
+     * @param loaded File that was read.
      */
-    private void refreshRelevant() {
-        relevant.clear();
-        graphInfo.getIncomplete().forEach(this::addRelevant);
+    private void showFile(GrammarModel.Loaded loaded) {
+        defs.textProperty().removeListener(textListener);
+        viewingFile = true;
+        fileView.setItems(FXCollections.observableList(loaded.getLines()));
+        fileView.scrollTo(0);
+        defs.clear();
+        defs.setEditable(true);
+        if (state != DEFAULT) {
+            // The options being selected may not be in the new rules
+            engine.up();
+            showState(CommandEngine.SELECT);
+        }
+        else showDefinitions();
+        updateCount(parser.get().getRuleLines());
     }
     
     /**
-     * Displays number counts on the lines specified by given line numbers.
-     * The numbers on the given lines will start at 1 and increment with each
-     * line to display on.
-     * @param lines
+     * Put the text of the loaded file in the box so it can be edited. The
+     * worker already has the same lines, so the text is not parsed again
+     * until it changes.
+     * @param line Line to put the caret on, or -1 for the first line.
      */
-    private void updateCount(List<Integer> lines) {
-        StringBuilder builder = new StringBuilder();
-        int count = 1;
-        int last = 0;
-        for (int i : lines) {
-            i = i - 1;
-            for (int j = last; j < i; j++) {
-                builder.append('\n');
-            }
-            last = i;
-            builder.append(count++);
+    private void editFile(int line) {
+        if (!viewingFile) return;
+        List<String> lines = fileView.getItems();
+        int caret = 0;
+        for (int i = 0; i < line; i++) {
+            caret += lines.get(i).length() + 1;
         }
-        this.count.setText(builder.toString());
+        defs.setText(String.join("\n", lines));
+        fileView.setItems(FXCollections.observableArrayList());
+        viewingFile = false;
+        defs.textProperty().addListener(textListener);
+        showDefinitions();
+        defs.positionCaret(caret);
+        defs.requestFocus();
     }
     
     /**
-     * Gets the rule with the given number. The number is the line number
-     * displayed in the counting text area, which makes it 1-indexed.
-     * @param number Line number of the rule to add.
-     * @return Rule on the given line number.
+     * Show the production rules, either as the lines of a loaded file or
+     * in the box.
      */
-    private Rule getRule(int number) {
-        List<Rule> rules = ruleReader.fromString(defs.getText());
-        int realIndex = 0;
-        for (Rule rule : rules) {
-            if (rule != null) {
-                realIndex++;
-                if (realIndex == number) return rule;
-            }
-        }
-        return null;
+    private void showDefinitions() {
+        if (viewingFile) defArea.getChildren().setAll(fileView);
+        else defArea.getChildren().setAll(count, defs);
     }
     
     /**
-     * Get the rule for the given non-terminal.
-     * Multiple definitions of the same production rule will be combined.
-     * @param prod Production rule, including the angle brackets.
-     * @return Full production rule.
+     * Displays number counts on the lines specified by given line numbers.
+     * The numbers on the given lines will start at 1 and increment with each
+     * line to display on. Only the numbers on visible lines are drawn.
+     * @param lines Line numbers in ascending order.
      */
-    private Rule getRule(String prod) {
-        List<Rule> rules = ruleReader.fromString(defs.getText());
-        return ProductionRuleReader.getFullRule(prod, rules);
+    private void updateCount(List<Integer> lines) {
+        ruleLines = lines;
+        count.setRuleLines(lines);
+        fileView.refresh();
     }
     
     /**
-     * Select a node to add children to.
-     * If the node does not have a production rule defined, an error will display.
-     * @param n Number of the node to select.
+     * Show the options of the selected rule when the engine enters selection
+     * mode, and restore the production rules when it leaves.
+     * @param before State of the engine before the last command.
      */
-    private void startSelection(int n) {
-        if (n < 0) return;
-        String node = graphInfo.getNode(n);
-        if (node == null) {
-            Utils.error("Invalid node", "There is no production rule for node " + n);
-            return;
-        }
-        Rule rule = getRule(node);
-        if (rule == null) {
-            Utils.error("Invalid node", "There is no production rule for node " + n);
-            return;
-        }
-        select(n, rule);
+    private void showState(int before) {
+        int after = engine.getState();
+        if (before == CommandEngine.DEFAULT && after == CommandEngine.SELECT) select(engine.getSelecting());
+        else if (before == CommandEngine.SELECT && after == CommandEngine.DEFAULT) exitSelection();
     }
     
     /**
      * Change to selection mode.
-     * An option will be selected from the given production rule and appended
-     * as children to the specified node.
-     * @param node Node to append to.
+     * The production rules are hidden behind the options of the given rule
+     * until the selection is made or cancelled. The box keeps its text, so
+     * it is not copied.
      * @param rule Rule to select options from.
      */
-    private void select(int node, Rule rule) {
+    private void select(Rule rule) {
         state = SELECT;
-        originalRules = defs.getText();
-        selecting = rule;
-        parent = node;
-        defs.setText(String.join("\n", rule.getParts()));
+        options.setText(String.join("\n", rule.getParts()));
         List<Integer> lines = IntStream.range(1, rule.getParts().size() + 1).boxed().collect(Collectors.toList());
-        updateCount(lines);
+        optionCount.setRuleLines(lines);
+        defArea.getChildren().setAll(optionCount, options);
     }
     
     /**
-     * Select the option on the specified line.
-     * @param i Line number (1-indexed) to select.
+     * Change back to the default mode and show the production rules again.
+     * The rules did not change during the selection, so the grammar does
+     * not need to be updated.
      */
-    private void makeSelection(int i) {
+    private void exitSelection() {
+        options.clear();
         state = DEFAULT;
-        if (i < 1) {
-            // Cancel selection
-            defs.setText(originalRules);
-            return;
-        }
-        i--;
-        if (i >= selecting.getParts().size()) {
-            state = SELECT;
-            Utils.error("Invalid", "Invalid line number.");
-            return;
-        }
-        // Add elements from the selection to the graph
-        String part = selecting.getParts().get(i);
-        addRuleParts(part, parent);
-        // Exit selection mode
-        defs.setText(originalRules);
-        originalRules = null;
-        selecting = null;
+        showDefinitions();
+        updateCount(parser.get().getRuleLines());
     }
     
-    private void addRuleParts(String part, int parent) {
-        Utils.getRuleParts(part).map(s -> graphInfo.newNode(s))
-             .collect(Collectors.toCollection(LinkedList::new))
-             .descendingIterator()
-             .forEachRemaining(n -> {
-                 graphInfo.addLink(parent, n);
-             });
-        refreshRelevant();
+    /**
+     * Execute the dot program to get the current visual of the graph.
+     * @param extra Whether to display extras like node IDs and the relevant node.
+     */
+    private void redraw(boolean extra) {
+        redraw(extra, false);
     }
     
     /**
-     * Find a simple path from the given node to the value that matches the
-     * given pattern.
-     * This will only search for a simple linear path through production
-     * rules to the specified value. If there is any ambiguity or multiple
-     * paths to the value, the search will fail.
+     * Execute the dot program to get the current visual of the graph.
+     * The image is drawn in the background and shown once it is ready.
      *
-     * If a path is found the nodes from the current node to found value are added.
-     * @param node Node number to search from.
-     * @param to Pattern representing value to reach.
+     * If the vector renderer is selected, dot only lays out the graph and
+     * the visible part is drawn as shapes, which can be zoomed. If the
+     * built-in renderer is selected, the graph is drawn directly instead.
+     * Exports always use dot. Collapsed nodes and focus mode only change
+     * what is drawn by dot, and exports always include every node.
+     * @param extra Whether to display extras like node IDs and the relevant node.
+     * @param full If true, will also display extras on terminal symbols.
      */
-    private void simplePath(int node, String to) {
-        if (node < 0) return;
-        Map<String, Set<String>> rules = new HashMap<>();
-        // Fill map of values -> set of production rules that create it
-        ruleReader.fromString(defs.getText())
-                  .stream()
-                  .filter(Objects::nonNull)
-                  .forEach(rule -> rule.getParts()
-                                       .stream()
-                                       .map(Utils::formatRuleValue)
-                                       .forEach(s -> rules.compute(s, (key, val) -> {
-                                           if (val == null) val = new HashSet<>(2);
-                                           val.add(rule.getFullName());
-                                           return val;
-                                       })));
-        String target = graphInfo.getNode(node);
-        Set<String> checked = new HashSet<>();
-        Queue<String> path = new LinkedList<>();
-        boolean first = true;
-        // Search backwards from the value to the starting node.
-        while (!to.equals(target)) {
-            if (first) {
-                first = false;
-                String start = to;
-                Optional<String> startRule = Utils.single(rules.keySet().stream().filter(s -> Utils.matchesSearch(start, s)));
-                if (startRule.isPresent()) {
-                    path.add(startRule.get());
-                    to = startRule.get();
-                    if (to.equals(target)) return;
-                }
-                else {
-                    Utils.error("No node", "Cannot find a node that matches the pattern, or there are multiple nodes that match the pattern.");
-                    return;
-                }
-            }
-            else path.add(to);
-            if (!rules.containsKey(to)) {
-                Utils.error("No path", "There is no path to the specified value.");
-                return;
-            }
-            Optional<String> parent = Utils.single(rules.get(to).stream().filter(s -> !checked.contains(s)));
-            if (!parent.isPresent()) {
-                Utils.error("No path", "There is no path to the specified value, or there are multiple paths to the specified value.");
-                return;
-            }
-            to = parent.get();
-            checked.add(to);
+    private void redraw(boolean extra, boolean full) {
+        drawExtra = extra;
+        drawFull = full;
+        // Only the drawing that is shown is kept
+        if (!RENDER_DOT.equals(renderChoice.getValue())) image.setImage(null);
+        if (!RENDER_VECTOR.equals(renderChoice.getValue())) vectorCanvas.setLayout(null);
+        if (RENDER_BUILT_IN.equals(renderChoice.getValue())) {
+            extra |= full;
+            treeCanvas.setTree(TreeLayout.layout(engine.getGraph(), extra, full, TREE_FONT), extra ? engine.getRelevant() : -1);
+            view.setContent(treeCanvas);
+            return;
         }
-        if (path.size() == 0) return;
-        // Add the path of nodes
-        int last = -1;
-        String matchedValue = path.remove();
-        int valueParent = node;
-        while (path.size() > 0) {
-            int n = graphInfo.newNode(path.remove());
-            if (last > -1) graphInfo.addLink(n, last);
-            else {
-                String newNode = graphInfo.getNode(n);
-                if (Utils.nonEmpty(newNode, "<", ">")) relevant.addFirst(n);
-            }
-            last = n;
-            if (valueParent == node) valueParent = last;
+        if (RENDER_VECTOR.equals(renderChoice.getValue())) {
+            view.setContent(vectorCanvas);
+            Dot dot = getDot();
+            if (dot == null) return;
+            renderer.render(dot, engine.getSpec(extra, full), "plain", PlainLayout::read, vectorCanvas::setLayout);
+            return;
         }
-        if (last != -1) graphInfo.addLink(node, last);
-        addRuleParts(matchedValue, valueParent);
-        redraw(true);
+        view.setContent(image);
+        Dot dot = getDot();
+        if (dot == null) return;
+        renderer.render(dot, engine.getSpec(extra, full), image::setImage);
     }
     
     /**
-     * Execute the dot program to get the current visual of the graph.
-     * @param extra Whether to display extras like node IDs and the relevant node.
+     * Show or hide the time taken by each phase over the graph. While it is
+     * shown it is updated every second.
      */
-    private void redraw(boolean extra) {
-        redraw(extra, false);
+    private void toggleStats() {
+        boolean show = !stats.isVisible();
+        stats.setVisible(show);
+        if (show) {
+            stats.setText(LatencyStats.summary());
+            statsTimer.play();
+        }
+        else statsTimer.stop();
     }
     
     /**
-     * Execute the dot program to get the current visual of the graph.
-     * @param extra Whether to display extras like node IDs and the relevant node.
-     * @param full If true, will also display extras on terminal symbols.
+     * Save the time taken by each phase as CSV to the file chosen in a file
+     * dialog.
      */
-    private void redraw(boolean extra, boolean full) {
-        Image i = executeDot(extra, full, "png", Image::new);
-        image.setImage(i);
+    private void saveStats() {
+        FileChooser fc = new FileChooser();
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV File", "*.csv"));
+        fc.setInitialFileName("latency.csv");
+        File file = fc.showSaveDialog(stage);
+        if (file == null) return;
+        try {
+            LatencyStats.writeCsv(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            Utils.error("Error", "An exception occurred while saving the file.");
+        }
     }
     
     /**
@@ -666,6 +596,61 @@ public class Grapher extends Application {
         });
     }
     
+    /**
+     * Save the image in every format to the folder chosen in a dialog.
+     * The files are saved in the background by one dot process.
+     */
+    private void saveAll() {
+        DirectoryChooser dc = new DirectoryChooser();
+        File dir = dc.showDialog(stage);
+        if (dir == null) return;
+        List<String> types = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        for (String extension : fileTypes.keySet()) {
+            types.add(extension.substring(1));
+            files.add(new File(dir, "tree" + extension));
+        }
+        exportDot(false, false, types, files);
+    }
+    
+    /**
+     * Get the dot program from the path in the dot text box.
+     * An error is displayed if the path is invalid.
+     * @return Dot program or null.
+     */
+    private Dot getDot() {
+        Dot dot = new Dot(dotPath.getText());
+        if (!dot.isValid()) {
+            Utils.error("Invalid dot path", "Invalid path to DOT.");
+            return null;
+        }
+        return dot;
+    }
+    
+    /**
+     * Execute the dot program once to save the current graph in several
+     * formats. The export runs in the background, and an error is displayed
+     * if it fails.
+     * @param extra Whether to display extras like node IDs and the relevant node.
+     * @param full Same as extra but will also display IDs on terminal symbols.
+     * If true, extra will also be true.
+     * @param types Output formats.
+     * @param files File to save each format to.
+     */
+    private void exportDot(boolean extra, boolean full, List<String> types, List<File> files) {
+        Dot dot = getDot();
+        if (dot == null) return;
+        GraphSpec spec = engine.getGraph().getSpec(extra, full, engine.getRelevant());
+        try {
+            exporter.submit(dot, spec, types, files, e -> {
+                e.printStackTrace();
+                Platform.runLater(() -> Utils.error("DOT error", "An exception occurred while executing DOT."));
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
     /**
      * Execute the dot program to get the current visual of the graph.
      *
@@ -677,25 +662,14 @@ public class Grapher extends Application {
      * @return Function applied to dot output.
      */
     private <T> T executeDot(boolean extra, boolean full, String type, Function<InputStream, T> function) {
-        String path = dotPath.getText();
-        if (Utils.nonEmpty(path, "\"", "\"")) {
-            path = path.substring(1, path.length() - 1);
-        }
-        if (!(new File(path).exists())) {
-            Utils.error("Invalid dot path", "Invalid path to DOT.");
-            return null;
-        }
-        String spec = graphInfo.getGraphSpec(extra, full, getRelevant());
-        // Execute dot and send output to an Image.
-        // -T parameters tells dot to output the graph in a specific format
-        ProcessBuilder pb = new ProcessBuilder(path, "-T" + type);
+        Dot dot = getDot();
+        if (dot == null) return null;
+        GraphSpec spec = engine.getGraph().getSpec(extra, full, engine.getRelevant());
+        long start = System.nanoTime();
         try {
-            Process process = pb.start();
-            process.getOutputStream().write(spec.getBytes());
-            process.getOutputStream().close();
-            T t = function.apply(process.getInputStream());
-            process.waitFor();
-            return t;
+            T result = renderCache.run(dot, spec, type, function);
+            LatencyStats.record(LatencyStats.DOT, start);
+            return result;
         } catch (IOException | InterruptedException e) {
             Utils.error("DOT error", "An exception occurred while executing DOT.");
             e.printStackTrace();
@@ -703,4 +677,24 @@ public class Grapher extends Application {
         return null;
     }
     
+    /**
+     * A line of a loaded file, after the number of the rule that starts on
+     * it.
+     */
+    private class FileLine extends ListCell<String> {
+        
+        @Override
+        protected void updateItem(String item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setText(null);
+                return;
+            }
+            int rule = Collections.binarySearch(ruleLines, getIndex() + 1);
+            int digits = Math.max(RuleGutter.MIN_DIGITS, String.valueOf(ruleLines.size()).length());
+            setText(String.format("%" + digits + "s  %s", rule >= 0 ? String.valueOf(rule + 1) : "", item));
+        }
+        
+    }
+    
 }
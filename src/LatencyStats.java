@@ -0,0 +1,180 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps how long each phase of drawing a tree takes.
+ *
+ * Each phase has a histogram of its durations. A duration falls in a bucket
+ * for its power of two, which is split into {@value #SUB_BUCKETS} smaller
+ * buckets, so percentiles are accurate to a few percent however long the
+ * phase takes, and recording is a few array operations. The histograms can
+ * be shown as text or saved as CSV. When Flight Recorder is available, each
+ * duration is also sent as a {@link PhaseEvent}.
+ */
+public class LatencyStats {
+    
+    public static final String PARSE = "parse";
+    public static final String COMMAND = "command";
+    public static final String PATH = "path";
+    public static final String SPEC = "spec";
+    public static final String LAYOUT = "layout";
+    public static final String DOT = "dot";
+    public static final String DECODE = "decode";
+    
+    public static final List<String> PHASES = Arrays.asList(PARSE, COMMAND, PATH, SPEC, LAYOUT, DOT, DECODE);
+    
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final Histogram[] histograms = new Histogram[PHASES.size()];
+    private static final boolean events = hasFlightRecorder();
+    
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+    
+    private LatencyStats() {
+    }
+    
+    /**
+     * Flight Recorder classes are only in Java 11 and later and in some
+     * builds of Java 8, and are left out of runtimes built without the
+     * jdk.jfr module.
+     */
+    private static boolean hasFlightRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Record a phase that started at the given time and ends now.
+     * @param phase One of {@link #PHASES}.
+     * @param start Start time from {@link System#nanoTime()}.
+     */
+    public static void record(String phase, long start) {
+        long duration = System.nanoTime() - start;
+        int index = PHASES.indexOf(phase);
+        if (index < 0) throw new IllegalArgumentException("Unknown phase " + phase);
+        histograms[index].add(duration);
+        if (events) PhaseEvent.send(phase, duration);
+    }
+    
+    /**
+     * Remove every recorded duration.
+     */
+    public static void reset() {
+        for (Histogram histogram : histograms) histogram.clear();
+    }
+    
+    /**
+     * Get the number of durations and the median, 99th percentile, and
+     * maximum of each phase, in milliseconds.
+     * @return Table with one line for each phase that was recorded.
+     */
+    public static String summary() {
+        StringBuilder builder = new StringBuilder(String.format(Locale.ROOT, "%-8s %7s %9s %9s %9s", "phase", "count", "p50 ms", "p99 ms", "max ms"));
+        for (int i = 0; i < histograms.length; i++) {
+            long[] row = histograms[i].row();
+            if (row[0] == 0) continue;
+            builder.append(String.format(Locale.ROOT, "%n%-8s %7d %9.3f %9.3f %9.3f", PHASES.get(i), row[0], millis(row[1]), millis(row[2]), millis(row[3])));
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * Save the statistics of every phase as CSV, with durations in
+     * microseconds.
+     * @param file File to save to.
+     * @throws IOException If the file could not be written.
+     */
+    public static void writeCsv(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("phase,count,p50_us,p99_us,max_us");
+        for (int i = 0; i < histograms.length; i++) {
+            long[] row = histograms[i].row();
+            lines.add(PHASES.get(i) + "," + row[0] + "," + row[1] / 1000 + "," + row[2] / 1000 + "," + row[3] / 1000);
+        }
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+            for (String line : lines) out.println(line);
+        }
+    }
+    
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+    
+    /**
+     * Counts of durations in buckets that grow with the duration.
+     */
+    private static class Histogram {
+        
+        private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+        private long total;
+        private long max;
+        
+        private synchronized void add(long nanos) {
+            if (nanos < 0) nanos = 0;
+            counts[bucket(nanos)]++;
+            total++;
+            max = Math.max(max, nanos);
+        }
+        
+        private synchronized void clear() {
+            Arrays.fill(counts, 0);
+            total = 0;
+            max = 0;
+        }
+        
+        /**
+         * Get the count, median, 99th percentile, and maximum.
+         */
+        private synchronized long[] row() {
+            return new long[] {total, percentile(0.5), percentile(0.99), max};
+        }
+        
+        /**
+         * Get the highest duration of the bucket the percentile falls in.
+         */
+        private long percentile(double p) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(max, highest(i));
+            }
+            return max;
+        }
+        
+        /**
+         * Durations below {@value #SUB_BUCKETS} have a bucket each. Larger
+         * ones are split by the position of their highest bit, then by the
+         * next bits below it.
+         */
+        private static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int) nanos;
+            int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+        }
+        
+        private static long highest(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            long low = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+            return low + (1L << shift) - 1;
+        }
+        
+    }
+    
+}
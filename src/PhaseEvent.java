@@ -0,0 +1,40 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one phase of drawing a tree. It is only loaded
+ * by {@link LatencyStats} when Flight Recorder is available.
+ */
+@Name("productiongrapher.Phase")
+@Label("Phase")
+@Description("One phase of drawing a tree")
+@Category("Production Grapher")
+@StackTrace(false)
+public class PhaseEvent extends Event {
+    
+    @Label("Phase")
+    String phase;
+    
+    @Label("Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+    
+    /**
+     * Send an event for a phase if Flight Recorder is recording it.
+     * @param phase Name of the phase.
+     * @param duration Duration in nanoseconds.
+     */
+    static void send(String phase, long duration) {
+        PhaseEvent event = new PhaseEvent();
+        if (!event.isEnabled()) return;
+        event.phase = phase;
+        event.time = duration;
+        event.commit();
+    }
+    
+}
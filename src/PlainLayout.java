@@ -0,0 +1,339 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Layout of a graph computed by dot, read from its plain text output.
+ *
+ * Positions are converted from inches with the origin at the bottom to
+ * points with the origin at the top, so they can be drawn directly. Nodes
+ * and edges are sorted by their top edge, so the ones that overlap a band
+ * of the graph can be found with a binary search.
+ */
+public class PlainLayout {
+    
+    public static final double POINTS = 72;
+    
+    public static final int PLAIN = 0;
+    public static final int BOX = 1;
+    public static final int ELLIPSE = 2;
+    
+    private double width;
+    private double height;
+    // Bounds of each node, sorted by top
+    private double[] nodeLeft;
+    private double[] nodeTop;
+    private double[] nodeWidth;
+    private double[] nodeHeight;
+    private String[] labels;
+    private int[] shapes;
+    private boolean[] nodeDashed;
+    private double maxNodeHeight;
+    // Control points of each edge as x, y pairs, sorted by top
+    private double[][] points;
+    private double[] edgeTop;
+    private double[] edgeBottom;
+    private double[] edgeLeft;
+    private double[] edgeRight;
+    private boolean[] edgeDashed;
+    private double maxEdgeHeight;
+    
+    private PlainLayout() {}
+    
+    /**
+     * Read the output of dot in the plain format.
+     * The output ends early when a newer render stops dot, so failures are
+     * not printed here; the caller reports them if they matter.
+     * @param in Output of dot.
+     * @return Layout of the graph, or null if the output could not be read.
+     */
+    public static PlainLayout read(InputStream in) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            PlainLayout layout = new PlainLayout();
+            layout.parse(reader);
+            return layout;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    private void parse(BufferedReader reader) throws IOException {
+        List<String[]> nodes = new ArrayList<>();
+        List<String[]> edges = new ArrayList<>();
+        boolean stopped = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = split(line);
+            if (fields.length == 0) continue;
+            switch (fields[0]) {
+                case "graph":
+                    width = Double.parseDouble(fields[2]) * POINTS;
+                    height = Double.parseDouble(fields[3]) * POINTS;
+                    break;
+                case "node":
+                    nodes.add(fields);
+                    break;
+                case "edge":
+                    edges.add(fields);
+                    break;
+                case "stop":
+                    stopped = true;
+                    break;
+                default:
+                    throw new IOException("Unknown line: " + line);
+            }
+        }
+        if (!stopped) throw new IOException("Incomplete output");
+        readNodes(nodes);
+        readEdges(edges);
+    }
+    
+    /**
+     * Node lines have the name, center, size, label, style, shape, and
+     * colors of the node.
+     */
+    private void readNodes(List<String[]> lines) {
+        int count = lines.size();
+        double[] left = new double[count];
+        double[] top = new double[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            String[] fields = lines.get(i);
+            double w = Double.parseDouble(fields[4]) * POINTS;
+            double h = Double.parseDouble(fields[5]) * POINTS;
+            left[i] = Double.parseDouble(fields[2]) * POINTS - w / 2;
+            top[i] = height - Double.parseDouble(fields[3]) * POINTS - h / 2;
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(top[a], top[b]));
+        nodeLeft = new double[count];
+        nodeTop = new double[count];
+        nodeWidth = new double[count];
+        nodeHeight = new double[count];
+        labels = new String[count];
+        shapes = new int[count];
+        nodeDashed = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int n = order[i];
+            String[] fields = lines.get(n);
+            nodeLeft[i] = left[n];
+            nodeTop[i] = top[n];
+            nodeWidth[i] = Double.parseDouble(fields[4]) * POINTS;
+            nodeHeight[i] = Double.parseDouble(fields[5]) * POINTS;
+            labels[i] = fields[6];
+            String shape = fields[8];
+            shapes[i] = shape.equals("plain") || shape.equals("plaintext") || shape.equals("none") ? PLAIN : shape.equals("box") || shape.equals("rect") ? BOX : ELLIPSE;
+            nodeDashed[i] = fields[7].contains("dashed");
+            maxNodeHeight = Math.max(maxNodeHeight, nodeHeight[i]);
+        }
+    }
+    
+    /**
+     * Edge lines have the tail and head, the control points of a B-spline,
+     * an optional label with its position, and the style and color.
+     */
+    private void readEdges(List<String[]> lines) {
+        int count = lines.size();
+        double[][] all = new double[count][];
+        double[] top = new double[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            String[] fields = lines.get(i);
+            int n = Integer.parseInt(fields[3]);
+            double[] p = new double[n * 2];
+            top[i] = Double.MAX_VALUE;
+            for (int j = 0; j < n; j++) {
+                p[j * 2] = Double.parseDouble(fields[4 + j * 2]) * POINTS;
+                p[j * 2 + 1] = height - Double.parseDouble(fields[5 + j * 2]) * POINTS;
+                top[i] = Math.min(top[i], p[j * 2 + 1]);
+            }
+            all[i] = p;
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(top[a], top[b]));
+        points = new double[count][];
+        edgeTop = new double[count];
+        edgeBottom = new double[count];
+        edgeLeft = new double[count];
+        edgeRight = new double[count];
+        edgeDashed = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int e = order[i];
+            String[] fields = lines.get(e);
+            double[] p = all[e];
+            points[i] = p;
+            edgeTop[i] = top[e];
+            edgeBottom[i] = -Double.MAX_VALUE;
+            edgeLeft[i] = Double.MAX_VALUE;
+            edgeRight[i] = -Double.MAX_VALUE;
+            for (int j = 0; j < p.length; j += 2) {
+                edgeLeft[i] = Math.min(edgeLeft[i], p[j]);
+                edgeRight[i] = Math.max(edgeRight[i], p[j]);
+                edgeBottom[i] = Math.max(edgeBottom[i], p[j + 1]);
+            }
+            // The style is second to last, after the optional label
+            edgeDashed[i] = fields[fields.length - 2].contains("dashed");
+            maxEdgeHeight = Math.max(maxEdgeHeight, edgeBottom[i] - edgeTop[i]);
+        }
+    }
+    
+    /**
+     * Split a line into fields separated by spaces. Fields with spaces in
+     * them are quoted, with backslashes before quotes inside them.
+     */
+    static String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        int i = 0;
+        int length = line.length();
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                i++;
+                continue;
+            }
+            StringBuilder field = new StringBuilder();
+            if (c == '"') {
+                i++;
+                while (i < length && line.charAt(i) != '"') {
+                    char d = line.charAt(i++);
+                    if (d == '\\' && i < length) d = line.charAt(i++);
+                    field.append(d);
+                }
+                i++;
+            }
+            else {
+                while (i < length && line.charAt(i) != ' ') field.append(line.charAt(i++));
+            }
+            fields.add(field.toString());
+        }
+        return fields.toArray(new String[0]);
+    }
+    
+    /**
+     * Find the first item in a sorted array of top edges that could reach
+     * below a position.
+     * @param tops Top edges in ascending order.
+     * @param y Position.
+     * @param maxHeight Height of the tallest item.
+     * @return Index of the first item whose top is at least y minus the
+     * height of the tallest item.
+     */
+    private static int first(double[] tops, double y, double maxHeight) {
+        double from = y - maxHeight;
+        int low = 0;
+        int high = tops.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tops[mid] < from) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+    
+    public double getWidth() {
+        return width;
+    }
+    
+    public double getHeight() {
+        return height;
+    }
+    
+    public int getNodeCount() {
+        return labels.length;
+    }
+    
+    /**
+     * Get the first node that could overlap a band that starts at a
+     * position. Nodes after it are in order of their top edge.
+     * @param top Top of the band.
+     * @return Node index.
+     */
+    public int firstNode(double top) {
+        return first(nodeTop, top, maxNodeHeight);
+    }
+    
+    public double getNodeLeft(int i) {
+        return nodeLeft[i];
+    }
+    
+    public double getNodeTop(int i) {
+        return nodeTop[i];
+    }
+    
+    public double getNodeWidth(int i) {
+        return nodeWidth[i];
+    }
+    
+    public double getNodeHeight(int i) {
+        return nodeHeight[i];
+    }
+    
+    public String getLabel(int i) {
+        return labels[i];
+    }
+    
+    /**
+     * Get the shape of a node.
+     * @param i Node index.
+     * @return {@link #PLAIN}, {@link #BOX}, or {@link #ELLIPSE}.
+     */
+    public int getShape(int i) {
+        return shapes[i];
+    }
+    
+    public boolean isNodeDashed(int i) {
+        return nodeDashed[i];
+    }
+    
+    public int getEdgeCount() {
+        return points.length;
+    }
+    
+    /**
+     * Get the first edge that could overlap a band that starts at a
+     * position. Edges after it are in order of their top edge.
+     * @param top Top of the band.
+     * @return Edge index.
+     */
+    public int firstEdge(double top) {
+        return first(edgeTop, top, maxEdgeHeight);
+    }
+    
+    /**
+     * Get the control points of an edge. The first point is followed by
+     * groups of three points, each of which is a cubic Bezier curve from
+     * the point before it.
+     * @param i Edge index.
+     * @return Coordinates as x, y pairs.
+     */
+    public double[] getPoints(int i) {
+        return points[i];
+    }
+    
+    public double getEdgeTop(int i) {
+        return edgeTop[i];
+    }
+    
+    public double getEdgeBottom(int i) {
+        return edgeBottom[i];
+    }
+    
+    public double getEdgeLeft(int i) {
+        return edgeLeft[i];
+    }
+    
+    public double getEdgeRight(int i) {
+        return edgeRight[i];
+    }
+    
+    public boolean isEdgeDashed(int i) {
+        return edgeDashed[i];
+    }
+    
+}
@@ -0,0 +1,180 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The relevant nodes, in the order they are worked on.
+ *
+ * Every change is one node inserted or removed at a position, and is
+ * passed on to the history and the journal the same way {@link GraphInfo}
+ * passes on changes to the graph. Replacing the whole list only makes the
+ * changes needed to turn the old list into the new one, so saving a
+ * command costs space for what changed rather than for a copy of the list.
+ */
+public class RelevantNodes implements Iterable<Integer> {
+    
+    private final List<Integer> nodes = new ArrayList<>();
+    private GraphHistory history;
+    private SessionJournal journal;
+    
+    /**
+     * Set the history that records every change.
+     * @param history History to record to, or null to stop recording.
+     */
+    public void setHistory(GraphHistory history) {
+        this.history = history;
+    }
+    
+    /**
+     * Set the journal that saves every change.
+     * @param journal Journal to write to, or null to stop writing.
+     */
+    public void setJournal(SessionJournal journal) {
+        this.journal = journal;
+    }
+    
+    public int size() {
+        return nodes.size();
+    }
+    
+    /**
+     * Get the first relevant node.
+     * @return Node ID or -1 if there are none.
+     */
+    public int first() {
+        return nodes.isEmpty() ? -1 : nodes.get(0);
+    }
+    
+    /**
+     * Get the relevant nodes in order.
+     * @return Node IDs.
+     */
+    public int[] toArray() {
+        return nodes.stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    @Override
+    public Iterator<Integer> iterator() {
+        return nodes.iterator();
+    }
+    
+    /**
+     * Insert a node at a position.
+     * @param index Position in the list.
+     * @param node Node ID
+     */
+    public void insert(int index, int node) {
+        nodes.add(index, node);
+        if (history != null) history.relevantInserted(index, node);
+        if (journal != null) journal.relevantInserted(index, node);
+    }
+    
+    /**
+     * Remove the node at a position.
+     * @param index Position in the list.
+     */
+    public void removeAt(int index) {
+        int node = nodes.remove(index);
+        if (history != null) history.relevantRemoved(index, node);
+        if (journal != null) journal.relevantRemoved(index);
+    }
+    
+    public void addFirst(int node) {
+        insert(0, node);
+    }
+    
+    public void addLast(int node) {
+        insert(nodes.size(), node);
+    }
+    
+    public void removeFirst() {
+        if (!nodes.isEmpty()) removeAt(0);
+    }
+    
+    /**
+     * Move a node to the front, adding it if it is not relevant yet.
+     * @param node Node ID
+     */
+    public void moveToFront(int node) {
+        int index = nodes.indexOf(node);
+        if (index == 0) return;
+        if (index > 0) removeAt(index);
+        addFirst(node);
+    }
+    
+    public void clear() {
+        for (int i = nodes.size() - 1; i >= 0; i--) removeAt(i);
+    }
+    
+    /**
+     * Replace the list. The nodes that are in both lists in the same order
+     * are kept, found as the longest common subsequence, and the others are
+     * removed or inserted. Each node must only be in the list once.
+     * @param next New relevant nodes in order.
+     */
+    public void set(int[] next) {
+        Map<Integer, Integer> oldIndex = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) oldIndex.put(nodes.get(i), i);
+        boolean[] keepNew = new boolean[next.length];
+        boolean[] keepOld = new boolean[nodes.size()];
+        // Nodes of the new list that are also in the old one, and their
+        // old positions, which must increase to keep the node
+        int[] shared = new int[next.length];
+        int[] positions = new int[next.length];
+        int count = 0;
+        for (int i = 0; i < next.length; i++) {
+            Integer index = oldIndex.get(next[i]);
+            if (index == null) continue;
+            shared[count] = i;
+            positions[count++] = index;
+        }
+        for (int i : increasing(positions, count)) {
+            keepNew[shared[i]] = true;
+            keepOld[positions[i]] = true;
+        }
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            if (!keepOld[i]) removeAt(i);
+        }
+        for (int i = 0; i < next.length; i++) {
+            if (!keepNew[i]) insert(i, next[i]);
+        }
+    }
+    
+    /**
+     * Find the longest increasing subsequence of an array.
+     * @return Indices of the subsequence in ascending order.
+     */
+    private static int[] increasing(int[] values, int count) {
+        // tails[k] is the index of the smallest last value of an increasing
+        // subsequence of length k + 1
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i]) low = mid + 1;
+                else high = mid;
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) length++;
+        }
+        int[] result = new int[length];
+        for (int i = length - 1, k = length > 0 ? tails[length - 1] : -1; i >= 0; i--, k = previous[k]) {
+            result[i] = k;
+        }
+        return result;
+    }
+    
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+    
+}
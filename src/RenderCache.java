@@ -0,0 +1,202 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keeps the output of recent dot runs so that drawing or exporting the same
+ * graph again does not run dot again.
+ *
+ * Entries are keyed by a hash of the graph spec and the output format. The
+ * total size of the stored output is limited, and the least recently used
+ * entries are removed first once the limit is reached.
+ */
+public class RenderCache {
+    
+    private final long budget;
+    private final LinkedHashMap<String, byte[]> entries;
+    private long size;
+    
+    /**
+     * @param budget Maximum number of bytes to keep.
+     */
+    public RenderCache(long budget) {
+        this.budget = budget;
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+    
+    /**
+     * Get the cache key for a graph spec.
+     * @param spec Graph in the dot language.
+     * @param type Output format.
+     * @return Cache key.
+     */
+    public static String key(GraphSpec spec, String type) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {}
+            
+            @Override
+            public void write(byte[] b, int off, int len) {}
+        };
+        try (Writer out = new OutputStreamWriter(new DigestOutputStream(discard, digest), StandardCharsets.UTF_8)) {
+            spec.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder builder = new StringBuilder(type).append(':');
+        for (byte b : digest.digest()) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * Get stored output.
+     * @param key Cache key.
+     * @return Output from dot or null if it is not stored.
+     */
+    public synchronized byte[] get(String key) {
+        return entries.get(key);
+    }
+    
+    /**
+     * Store output. Output larger than the whole budget is not stored.
+     * @param key Cache key.
+     * @param data Output from dot.
+     */
+    public synchronized void put(String key, byte[] data) {
+        if (data.length > budget) return;
+        byte[] old = entries.put(key, data);
+        if (old != null) size -= old.length;
+        size += data.length;
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (size > budget && it.hasNext()) {
+            size -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+    
+    /**
+     * Execute dot on the given graph spec, or use the stored output if the
+     * same spec was drawn before in the same format.
+     * @param dot Dot program to use.
+     * @param spec Graph in the dot language.
+     * @param type Output format.
+     * @param function Function that accepts the output from dot and returns a value.
+     * @param <T> Type to create from the inputstream.
+     * @return Function applied to dot output.
+     * @throws IOException If dot could not be executed.
+     * @throws InterruptedException If interrupted while waiting for dot.
+     */
+    public <T> T run(Dot dot, GraphSpec spec, String type, Function<InputStream, T> function) throws IOException, InterruptedException {
+        String key = key(spec, type);
+        byte[] data = get(key);
+        if (data != null) return function.apply(new ByteArrayInputStream(data));
+        return store(key, dot.start(type), spec, function);
+    }
+    
+    /**
+     * Run a dot process and store its output once it is done.
+     * The function receives the output as it is produced, while a copy of
+     * the output is kept for the cache. Output is only stored if dot
+     * finished successfully.
+     * @param key Cache key.
+     * @param process Process created by {@link Dot#start(String)}.
+     * @param spec Graph in the dot language.
+     * @param function Function that accepts the output from dot and returns a value.
+     * @param <T> Type to create from the inputstream.
+     * @return Function applied to dot output.
+     * @throws IOException If dot could not be executed.
+     * @throws InterruptedException If interrupted while waiting for dot.
+     */
+    public <T> T store(String key, Process process, GraphSpec spec, Function<InputStream, T> function) throws IOException, InterruptedException {
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        boolean[] complete = new boolean[1];
+        T t = Dot.run(process, spec, in -> {
+            CopyInputStream copying = new CopyInputStream(in, copy);
+            T result = function.apply(copying);
+            complete[0] = copying.finish();
+            return result;
+        });
+        if (complete[0] && process.exitValue() == 0) put(key, copy.toByteArray());
+        return t;
+    }
+    
+    /**
+     * Copies everything that is read from a stream.
+     */
+    private static class CopyInputStream extends FilterInputStream {
+        
+        private final OutputStream copy;
+        
+        private CopyInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) copy.write(b);
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) copy.write(b, off, n);
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes still need to be copied
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+        
+        /**
+         * Read the rest of the stream so the copy is complete.
+         * @return True if the whole stream was copied.
+         */
+        private boolean finish() {
+            byte[] buffer = new byte[8192];
+            try {
+                while (read(buffer, 0, buffer.length) >= 0) {
+                    // Copied by read
+                }
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        
+    }
+    
+}
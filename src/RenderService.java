@@ -0,0 +1,158 @@
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Draws graphs with dot on a background thread.
+ *
+ * Only the newest request is kept. A request that is still waiting is
+ * replaced when a new one arrives, and a dot process that is running for an
+ * older request is stopped since its image would never be shown. Images are
+ * published on the JavaFX thread, and only if no newer request was made in
+ * the meantime. Other formats than PNG can be drawn the same way, with a
+ * function that reads the output of dot.
+ */
+public class RenderService {
+    
+    private final ExecutorService executor;
+    private final RenderCache cache;
+    private long latest;
+    private Request<?> pending;
+    private Request<?> running;
+    private boolean scheduled;
+    
+    /**
+     * @param cache Cache of images that were drawn before.
+     */
+    public RenderService(RenderCache cache) {
+        this.cache = cache;
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Render");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Request a new image of a graph.
+     * Must be called from the JavaFX thread.
+     * @param dot Dot program to use.
+     * @param spec Graph in the dot language. It must not change after
+     * it is passed in.
+     * @param publish Receives the image once it is ready.
+     */
+    public void render(Dot dot, GraphSpec spec, Consumer<Image> publish) {
+        render(dot, spec, "png", Image::new, publish);
+    }
+    
+    /**
+     * Request a new drawing of a graph in any format.
+     * Must be called from the JavaFX thread.
+     * @param dot Dot program to use.
+     * @param spec Graph in the dot language. It must not change after
+     * it is passed in.
+     * @param type Output format.
+     * @param read Reads the output of dot on the background thread, and
+     * returns null if it could not be read.
+     * @param publish Receives the result once it is ready.
+     * @param <T> Type read from the output.
+     */
+    public synchronized <T> void render(Dot dot, GraphSpec spec, String type, Function<InputStream, T> read, Consumer<T> publish) {
+        pending = new Request<>(++latest, dot, spec, type, read, publish);
+        if (running != null) running.cancel();
+        if (!scheduled) {
+            scheduled = true;
+            executor.execute(this::work);
+        }
+    }
+    
+    /**
+     * Returns whether the request is still the newest one.
+     */
+    private synchronized boolean isLatest(Request<?> request) {
+        return request.id == latest;
+    }
+    
+    private synchronized Request<?> next() {
+        running = pending;
+        pending = null;
+        if (running == null) scheduled = false;
+        return running;
+    }
+    
+    private void work() {
+        Request<?> request;
+        while ((request = next()) != null) {
+            request.run();
+        }
+    }
+    
+    private class Request<T> {
+        
+        private final long id;
+        private final Dot dot;
+        private final GraphSpec spec;
+        private final String type;
+        private final Function<InputStream, T> read;
+        private final Consumer<T> publish;
+        private Process process;
+        private boolean cancelled;
+        
+        private Request(long id, Dot dot, GraphSpec spec, String type, Function<InputStream, T> read, Consumer<T> publish) {
+            this.id = id;
+            this.dot = dot;
+            this.spec = spec;
+            this.type = type;
+            this.read = read;
+            this.publish = publish;
+        }
+        
+        private void run() {
+            try {
+                String key = RenderCache.key(spec, type);
+                byte[] data = cache.get(key);
+                T result;
+                long start = System.nanoTime();
+                if (data != null) {
+                    result = read.apply(new ByteArrayInputStream(data));
+                    LatencyStats.record(LatencyStats.DECODE, start);
+                } else {
+                    Process process;
+                    synchronized (this) {
+                        if (cancelled) return;
+                        process = this.process = dot.start(type);
+                    }
+                    // The output is read while dot is writing it
+                    result = cache.store(key, process, spec, read);
+                    LatencyStats.record(LatencyStats.DOT, start);
+                }
+                if (!isLatest(this)) return;
+                if (result == null) throw new IOException("Could not read the output of dot.");
+                Platform.runLater(() -> {
+                    if (isLatest(this)) publish.accept(result);
+                });
+            } catch (IOException | InterruptedException e) {
+                if (!isLatest(this)) return;
+                e.printStackTrace();
+                Platform.runLater(() -> Utils.error("DOT error", "An exception occurred while executing DOT."));
+            }
+        }
+        
+        /**
+         * Stop the dot process for this request.
+         */
+        private synchronized void cancel() {
+            cancelled = true;
+            if (process != null) process.destroy();
+        }
+        
+    }
+    
+}
@@ -1,17 +1,34 @@
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class Rule {
     
     private int line;
     private String name;
+    private String fullName;
     private List<String> parts;
+    private int symbol;
+    private int[][] partSymbols;
     
     public Rule(int line, String name, List<String> parts) {
+        this(line, name, parts, -1, null);
+    }
+    
+    /**
+     * Create a rule with the symbol IDs for its name and values.
+     * @param line Line number for this rule.
+     * @param name Rule name without angle brackets.
+     * @param parts Production values.
+     * @param symbol Symbol ID of the full name.
+     * @param partSymbols Symbol IDs of the elements of each value.
+     */
+    public Rule(int line, String name, List<String> parts, int symbol, int[][] partSymbols) {
         this.line = line;
         this.name = name;
+        this.fullName = "<" + name + ">";
         this.parts = parts;
+        this.symbol = symbol;
+        this.partSymbols = partSymbols;
     }
     
     /**
@@ -30,38 +47,87 @@ public class Rule {
      * @return Rule object, or null for an invalid rule.
      */
     public static Rule parse(int line, String rule) {
-        String[] r = rule.split("::=");
-        if (r.length != 2) return null;
-        String name = r[0].trim();
-        if (!Utils.nonEmpty(name, "<", ">")) return null;
-        name = name.substring(1, name.length() - 1);
-        List<String> parts = Arrays.stream(r[1].split("(?<![|\\\\])\\|(?!\\|)"))
-                                   .map(String::trim)
-                                   .map(s -> s.replace("\\|", "|"))
-                                   .collect(Collectors.toList());
-        if (parts.size() < 1 || parts.get(0).isEmpty()) return null;
-        return new Rule(line, name, parts);
+        return parse(line, rule, null);
+    }
+    
+    /**
+     * Read a single production rule and add its symbols to a symbol table.
+     * @param line Line number for this rule.
+     * @param rule Raw production rule
+     * @param symbols Table to add symbols to, or null to skip adding symbols.
+     * @return Rule object, or null for an invalid rule.
+     * @see #parse(int, String)
+     */
+    public static Rule parse(int line, String rule, SymbolTable symbols) {
+        int[] r = RuleLexer.splitRule(rule);
+        if (r == null) return null;
+        String name = rule.substring(r[0] + 1, r[1] - 1);
+        List<String> parts = new ArrayList<>(r.length / 2 - 1);
+        for (int i = 2; i < r.length; i += 2) {
+            String part = rule.substring(r[i], r[i + 1]);
+            parts.add(part.contains("\\|") ? part.replace("\\|", "|") : part);
+        }
+        if (symbols == null) return new Rule(line, name, parts);
+        int[][] partSymbols = new int[parts.size()][];
+        for (int i = 0; i < partSymbols.length; i++) {
+            String part = parts.get(i);
+            int[] offsets = RuleLexer.symbols(part);
+            int[] ids = new int[offsets.length / 2];
+            for (int j = 0; j < ids.length; j++) {
+                ids[j] = symbols.intern(part.substring(offsets[j * 2], offsets[j * 2 + 1]));
+            }
+            partSymbols[i] = ids;
+        }
+        int symbol = symbols.intern(rule.substring(r[0], r[1]));
+        return new Rule(line, name, parts, symbol, partSymbols);
     }
     
     public int getLine() {
         return line;
     }
     
+    /**
+     * Get a copy of this rule that is displayed on a different line.
+     * @param line New line number.
+     * @return Rule on the given line.
+     */
+    public Rule withLine(int line) {
+        if (line == this.line) return this;
+        return new Rule(line, name, parts, symbol, partSymbols);
+    }
+    
     public String getName() {
         return name;
     }
     
     public String getFullName() {
-        return "<" + name + ">";
+        return fullName;
     }
     
     public List<String> getParts() {
         return parts;
     }
     
+    /**
+     * Get the symbol ID of this rule's full name.
+     * @return Symbol ID, or -1 if the rule was read without a symbol table.
+     */
+    public int getSymbol() {
+        return symbol;
+    }
+    
+    /**
+     * Get the symbol IDs of the elements of a production value.
+     * @param part Index of the value.
+     * @return Symbol IDs, or null if the rule was read without a symbol table.
+     */
+    public int[] getPartSymbols(int part) {
+        return partSymbols == null ? null : partSymbols[part];
+    }
+    
     @Override
     public String toString() {
-        return "<" + name + ">" + " ::= " + String.join(" | ", parts);
+        return fullName + " ::= " + String.join(" | ", parts);
     }
     
 }
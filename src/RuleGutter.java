@@ -0,0 +1,132 @@
+import javafx.geometry.Point2D;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows the number of each production rule next to the line it starts on
+ * in a text area.
+ *
+ * Only the lines that are visible in the text area are drawn, and the first
+ * rule on them is found with a binary search of the rule lines, so the
+ * cost of showing the numbers does not depend on the length of the text.
+ * The gutter scrolls with the text area and scrolling the gutter scrolls
+ * the text area.
+ */
+public class RuleGutter extends Pane {
+    
+    public static final int MIN_DIGITS = 3;
+    public static final double PADDING = 6;
+    
+    private final TextArea text;
+    private final Canvas canvas;
+    private final Font font;
+    private final double lineHeight;
+    private final double digitWidth;
+    private List<Integer> lines = Collections.emptyList();
+    
+    /**
+     * @param text Text area to number the lines of. It must not wrap text.
+     */
+    public RuleGutter(TextArea text) {
+        this.text = text;
+        font = text.getFont();
+        Text measure = new Text("0");
+        measure.setFont(font);
+        lineHeight = measure.getLayoutBounds().getHeight();
+        digitWidth = measure.getLayoutBounds().getWidth();
+        canvas = new Canvas();
+        getChildren().add(canvas);
+        setDigits(MIN_DIGITS);
+        text.scrollTopProperty().addListener((observable, oldValue, newValue) -> draw());
+        setOnScroll(event -> {
+            text.setScrollTop(Math.max(0, text.getScrollTop() - event.getDeltaY()));
+            event.consume();
+        });
+    }
+    
+    /**
+     * Set the lines that rules start on.
+     * @param lines Line numbers starting at 1, in ascending order. The rule
+     * on the first line is numbered 1, the next 2, and so on.
+     */
+    public void setRuleLines(List<Integer> lines) {
+        this.lines = lines;
+        setDigits(Math.max(MIN_DIGITS, String.valueOf(lines.size()).length()));
+        draw();
+    }
+    
+    private void setDigits(int digits) {
+        double width = digits * digitWidth + PADDING * 2;
+        setMinWidth(width);
+        setPrefWidth(width);
+    }
+    
+    @Override
+    protected void layoutChildren() {
+        canvas.setWidth(getWidth());
+        canvas.setHeight(getHeight());
+        draw();
+    }
+    
+    private void draw() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        g.setFill(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        if (lines.isEmpty() || lineHeight <= 0) return;
+        // Position of the top of the first line, which moves up as the text
+        // area is scrolled down
+        double top = getTextTop() - text.getScrollTop();
+        int first = Math.max(0, (int) Math.floor(-top / lineHeight));
+        int last = (int) Math.ceil((height - top) / lineHeight);
+        g.setFill(Color.BLACK);
+        g.setFont(font);
+        g.setTextAlign(TextAlignment.RIGHT);
+        g.setTextBaseline(VPos.TOP);
+        for (int i = firstRule(first + 1); i < lines.size(); i++) {
+            int line = lines.get(i) - 1;
+            if (line > last) break;
+            g.fillText(String.valueOf(i + 1), width - PADDING, top + line * lineHeight);
+        }
+    }
+    
+    /**
+     * Get the distance from the top of the gutter to the top of the first
+     * line when the text area is not scrolled.
+     */
+    private double getTextTop() {
+        Node viewport = text.lookup(".viewport");
+        Node content = text.lookup(".content");
+        if (viewport == null || !(content instanceof Region)) return text.snappedTopInset() + PADDING;
+        Point2D corner = sceneToLocal(viewport.localToScene(0, 0));
+        return corner.getY() + ((Region) content).snappedTopInset();
+    }
+    
+    /**
+     * Find the first rule that starts on or after a line.
+     */
+    private int firstRule(int line) {
+        int low = 0;
+        int high = lines.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lines.get(mid) < line) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+    
+}
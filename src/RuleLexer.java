@@ -0,0 +1,167 @@
+import java.util.Arrays;
+
+/**
+ * Scanner for production rules that works directly on the characters of a
+ * rule instead of using regular expressions.
+ *
+ * The scanner does not create substrings. Results are returned as pairs of
+ * offsets into the scanned text, where each pair is the start (inclusive)
+ * and end (exclusive) of a piece of the text.
+ */
+public class RuleLexer {
+    
+    private static final String DEFINE = "::=";
+    private static final char LINE_SEPARATOR = 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+    
+    /**
+     * Split a production rule into its name and values.
+     *
+     * The rule must contain exactly one ::= with a non-empty value after it.
+     * Values are split at isolated pipes (|), isolated meaning it is not next
+     * to another pipe symbol. Pipes can be escaped with a backslash. The name
+     * and the values are trimmed, but escaped pipes are left in the values.
+     * @param rule Raw production rule.
+     * @return Offsets of the name followed by the offsets of every value, or
+     * null if the rule is not in the form &lt;name&gt; ::= ...
+     */
+    public static int[] splitRule(String rule) {
+        int define = rule.indexOf(DEFINE);
+        if (define < 0) return null;
+        int nameStart = skipSpace(rule, 0, define);
+        int nameEnd = trimEnd(rule, nameStart, define);
+        if (nameEnd - nameStart <= 2 || rule.charAt(nameStart) != '<' || rule.charAt(nameEnd - 1) != '>') {
+            return null;
+        }
+        // There is at most one more value than there are pipes
+        int[] offsets = new int[(rule.length() - define) * 2 + 2];
+        offsets[0] = nameStart;
+        offsets[1] = nameEnd;
+        int size = 2;
+        int start = define + DEFINE.length();
+        int end = rule.length();
+        int last = start;
+        for (int i = start; i < end; i++) {
+            char c = rule.charAt(i);
+            if (c == ':' && rule.startsWith(DEFINE, i)) {
+                // Another definition is only allowed if nothing follows it.
+                for (int j = i; j < rule.length(); j += DEFINE.length()) {
+                    if (!rule.startsWith(DEFINE, j)) return null;
+                }
+                end = i;
+                break;
+            }
+            if (c != '|') continue;
+            if (i > start && (rule.charAt(i - 1) == '|' || rule.charAt(i - 1) == '\\')) continue;
+            if (i + 1 < end && rule.charAt(i + 1) == '|') continue;
+            offsets[size++] = last;
+            offsets[size++] = i;
+            last = i + 1;
+        }
+        if (end == start) return null;
+        offsets[size++] = last;
+        offsets[size++] = end;
+        // Empty values at the end are dropped
+        while (size > 2 && offsets[size - 1] == offsets[size - 2]) size -= 2;
+        if (size == 2) return null;
+        for (int i = 2; i < size; i += 2) {
+            int s = skipSpace(rule, offsets[i], offsets[i + 1]);
+            offsets[i + 1] = trimEnd(rule, s, offsets[i + 1]);
+            offsets[i] = s;
+        }
+        if (offsets[3] == offsets[2]) return null;
+        return Arrays.copyOf(offsets, size);
+    }
+    
+    /**
+     * Get the elements from a production value that will be added to the
+     * graph.
+     *
+     * Elements are either split by spaces or at non-terminal symbols. A
+     * non-terminal symbol is a &lt; followed by the nearest &gt; on the same
+     * line with at least one character between them.
+     * @param part Production value.
+     * @return Offsets of each element.
+     */
+    public static int[] symbols(CharSequence part) {
+        int length = part.length();
+        // Elements do not overlap and are never empty
+        int[] offsets = new int[length * 2];
+        int size = 0;
+        int token = -1;
+        // No symbol can start before this index, because there is no > on
+        // the same line.
+        int noMatch = 0;
+        // Elements are also split after this index
+        int close = -1;
+        for (int i = 0; i < length; i++) {
+            char c = part.charAt(i);
+            if (c == '<' && i > close && i >= noMatch) {
+                int found = findClose(part, i);
+                if (found < 0) noMatch = -found;
+                else {
+                    close = found;
+                    if (token >= 0) {
+                        offsets[size++] = token;
+                        offsets[size++] = i;
+                        token = -1;
+                    }
+                }
+            }
+            if (c == ' ') {
+                if (token >= 0) {
+                    offsets[size++] = token;
+                    offsets[size++] = i;
+                }
+                token = -1;
+            }
+            else if (token < 0) token = i;
+            if (i == close && token >= 0) {
+                offsets[size++] = token;
+                offsets[size++] = i + 1;
+                token = -1;
+            }
+        }
+        if (token >= 0) {
+            offsets[size++] = token;
+            offsets[size++] = length;
+        }
+        return Arrays.copyOf(offsets, size);
+    }
+    
+    /**
+     * Find the end of a non-terminal symbol.
+     * @param s Text to search.
+     * @param open Index of the opening &lt;
+     * @return Index of the closing &gt;, or the negative index where the
+     * search stopped if there is no symbol.
+     */
+    private static int findClose(CharSequence s, int open) {
+        int length = s.length();
+        int i = open + 1;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (isLineEnd(c)) return -i;
+            if (c == '>' && i > open + 1) return i;
+        }
+        return -i;
+    }
+    
+    /**
+     * Characters which end a line, and so cannot be inside a symbol.
+     */
+    private static boolean isLineEnd(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR;
+    }
+    
+    private static int skipSpace(String s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') from++;
+        return from;
+    }
+    
+    private static int trimEnd(String s, int from, int to) {
+        while (to > from && s.charAt(to - 1) <= ' ') to--;
+        return to;
+    }
+    
+}
@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the strings that match a pattern of {@link Utils#matchesSearch}
+ * without testing every string.
+ *
+ * The index keeps, for every character and every run of three characters,
+ * the list of strings that contain it. A pattern is only tested against
+ * the strings that are in every list a match must be in, and exact
+ * patterns are a hash lookup. The search stops once enough matches are
+ * found. The index does not change once built, so one index is made for
+ * each version of the grammar.
+ */
+public class SearchIndex {
+    
+    private static final int[] NONE = new int[0];
+    
+    private final List<String> items;
+    private final Map<String, int[]> exact;
+    private final Map<Character, int[]> chars;
+    private final Map<Long, int[]> grams;
+    
+    /**
+     * @param items Strings to search.
+     */
+    public SearchIndex(List<String> items) {
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        Map<String, Postings> exact = new HashMap<>();
+        Map<Character, Postings> chars = new HashMap<>();
+        Map<Long, Postings> grams = new HashMap<>();
+        for (int i = 0; i < this.items.size(); i++) {
+            String item = this.items.get(i);
+            exact.computeIfAbsent(item, k -> new Postings()).add(i);
+            for (int j = 0; j < item.length(); j++) {
+                chars.computeIfAbsent(item.charAt(j), k -> new Postings()).add(i);
+                if (j + 3 <= item.length()) grams.computeIfAbsent(gram(item, j), k -> new Postings()).add(i);
+            }
+        }
+        this.exact = toArrays(exact);
+        this.chars = toArrays(chars);
+        this.grams = toArrays(grams);
+    }
+    
+    private static <K> Map<K, int[]> toArrays(Map<K, Postings> map) {
+        Map<K, int[]> arrays = new HashMap<>(map.size() * 2);
+        map.forEach((k, p) -> arrays.put(k, Arrays.copyOf(p.ids, p.size)));
+        return arrays;
+    }
+    
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+    
+    public List<String> getItems() {
+        return items;
+    }
+    
+    /**
+     * Find the strings that match a pattern.
+     * @param pattern Pattern string, as used by {@link Utils#matchesSearch}.
+     * @param limit Stop after finding this many matches.
+     * @return Indices of the first matching strings, in ascending order.
+     */
+    public int[] find(String pattern, int limit) {
+        if (pattern.isEmpty()) return NONE;
+        // Every match is in all of these lists
+        List<int[]> lists;
+        if (Utils.nonEmpty(pattern, "'", "'")) {
+            lists = substringLists(pattern.substring(1, pattern.length() - 1));
+        }
+        else if (Utils.nonEmpty(pattern, "\"", "\"")) {
+            lists = new ArrayList<>();
+            lists.add(exact.getOrDefault(pattern.substring(1, pattern.length() - 1), NONE));
+        }
+        else lists = charLists(pattern);
+        if (lists.isEmpty()) return NONE;
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] candidates = lists.get(0);
+        int[] found = new int[Math.min(limit, candidates.length)];
+        int size = 0;
+        for (int i = 0; i < candidates.length && size < limit; i++) {
+            int id = candidates[i];
+            if (!inAll(lists, id)) continue;
+            if (Utils.matchesSearch(pattern, items.get(id))) found[size++] = id;
+        }
+        return size == found.length ? found : Arrays.copyOf(found, size);
+    }
+    
+    /**
+     * Find the only string that matches a pattern.
+     * @param pattern Pattern string, as used by {@link Utils#matchesSearch}.
+     * @return Index of the string, or -1 if no string or more than one
+     * string matches.
+     */
+    public int single(String pattern) {
+        int[] found = find(pattern, 2);
+        return found.length == 1 ? found[0] : -1;
+    }
+    
+    private static boolean inAll(List<int[]> lists, int id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (Arrays.binarySearch(lists.get(i), id) < 0) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Strings that contain a substring must contain every run of three
+     * characters in it, or every character if it is shorter.
+     */
+    private List<int[]> substringLists(String s) {
+        if (s.length() < 3) return charLists(s);
+        List<int[]> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            int[] list = grams.getOrDefault(gram(s, i), NONE);
+            if (!lists.contains(list)) lists.add(list);
+        }
+        return lists;
+    }
+    
+    /**
+     * Strings that contain a subsequence must contain every character of it.
+     */
+    private List<int[]> charLists(String s) {
+        List<int[]> lists = new ArrayList<>();
+        for (int i = 0; i < s.length(); i++) {
+            int[] list = chars.getOrDefault(s.charAt(i), NONE);
+            if (!lists.contains(list)) lists.add(list);
+        }
+        return lists;
+    }
+    
+    /**
+     * Sorted list of string indices without duplicates.
+     */
+    private static class Postings {
+        
+        private int[] ids = new int[2];
+        private int size;
+        
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+        
+    }
+    
+}
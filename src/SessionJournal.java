@@ -0,0 +1,400 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the tree being worked on so it can be loaded again after the
+ * application is closed.
+ *
+ * The changes made to the graph and to the relevant nodes are appended to a
+ * journal file, one entry for each command. Every
+ * so often the whole graph is written to a snapshot file and the journal is
+ * started over, so loading a session reads one snapshot and replays only the
+ * commands that came after it. Each entry has a sequence number, and the
+ * snapshot keeps the number of the last entry it includes, so entries that
+ * are already in the snapshot are skipped. An entry that was only partly
+ * written is ignored.
+ */
+public class SessionJournal implements Closeable {
+    
+    public static final String SNAPSHOT = "snapshot";
+    public static final String JOURNAL = "journal";
+    public static final int CHECKPOINT = 1000;
+    public static final long MIN_JOURNAL = 1L << 20;
+    
+    private static final int MAGIC = 0x50475332;
+    
+    private static final byte NEW = 0;
+    private static final byte LINK = 1;
+    private static final byte INSERT = 2;
+    private static final byte UNLINK = 3;
+    private static final byte REMOVE = 4;
+    private static final byte RESTORE = 5;
+    private static final byte DROP = 6;
+    private static final byte RELEVANT_INSERT = 7;
+    private static final byte RELEVANT_REMOVE = 8;
+    
+    private final File dir;
+    private final SymbolTable symbols;
+    private DataOutputStream journal;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private DataOutputStream ops = new DataOutputStream(pending);
+    private int opCount;
+    private long sequence;
+    private int entries;
+    private long journalBytes;
+    private long snapshotBytes;
+    
+    /**
+     * @param dir Directory the session is saved in.
+     * @param symbols Symbol table used to look up the value of nodes.
+     */
+    public SessionJournal(File dir, SymbolTable symbols) {
+        this.dir = dir;
+        this.symbols = symbols;
+    }
+    
+    /**
+     * Load the saved session into an empty graph and start appending to the
+     * journal. The graph and the relevant nodes must not be recording to a
+     * journal or a history while they are loaded.
+     * @param graph Empty graph to load into.
+     * @param relevant Receives the relevant nodes.
+     * @return True if a saved session was found.
+     * @throws IOException If the session could not be read or the journal
+     * could not be opened.
+     */
+    public boolean load(GraphInfo graph, RelevantNodes relevant) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        boolean found = false;
+        File snapshot = new File(dir, SNAPSHOT);
+        if (snapshot.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+                readSnapshot(in, graph, relevant);
+            }
+            snapshotBytes = snapshot.length();
+            found = true;
+        }
+        File file = new File(dir, JOURNAL);
+        long valid = 0;
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                valid = replay(in, graph, relevant);
+            }
+            found |= entries > 0;
+        }
+        journalBytes = valid;
+        // Drop an entry that was only partly written before appending
+        if (file.isFile() && valid < file.length()) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(valid);
+            }
+        }
+        journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        return found;
+    }
+    
+    private void readSnapshot(DataInputStream in, GraphInfo graph, RelevantNodes relevant) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a session snapshot");
+        sequence = in.readLong();
+        int[] names = new int[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = symbols.intern(in.readUTF());
+        }
+        graph.reserve(in.readInt());
+        int size = in.readInt();
+        int[][] children = new int[size][];
+        int[] nodes = new int[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = in.readInt();
+            graph.restoreNode(nodes[i], names[in.readInt()], new int[0]);
+            children[i] = new int[in.readInt()];
+            for (int j = 0; j < children[i].length; j++) {
+                children[i][j] = in.readInt();
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < children[i].length; j++) {
+                graph.insertLink(nodes[i], children[i][j], j);
+            }
+        }
+        int[] list = new int[in.readInt()];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = in.readInt();
+        }
+        relevant.set(list);
+    }
+    
+    /**
+     * Apply the journal entries that came after the snapshot.
+     * @return Length of the journal up to the end of the last whole entry.
+     */
+    private long replay(DataInputStream in, GraphInfo graph, RelevantNodes relevant) throws IOException {
+        long valid = 0;
+        while (true) {
+            byte[] entry;
+            try {
+                int length = in.readInt();
+                if (length < 0) break;
+                entry = new byte[length];
+                in.readFully(entry);
+            } catch (EOFException e) {
+                break;
+            }
+            valid += 4 + entry.length;
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(entry));
+            long number = data.readLong();
+            if (number <= sequence) continue;
+            sequence = number;
+            entries++;
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                apply(data, graph, relevant);
+            }
+        }
+        return valid;
+    }
+    
+    private void apply(DataInputStream data, GraphInfo graph, RelevantNodes relevant) throws IOException {
+        byte op = data.readByte();
+        switch (op) {
+            case NEW:
+                graph.newNode(data.readUTF());
+                break;
+            case LINK:
+                graph.addLink(data.readInt(), data.readInt());
+                break;
+            case INSERT:
+                graph.insertLink(data.readInt(), data.readInt(), data.readInt());
+                break;
+            case UNLINK:
+                graph.unlink(data.readInt());
+                break;
+            case REMOVE:
+                graph.removeNode(data.readInt());
+                break;
+            case RESTORE: {
+                int node = data.readInt();
+                int symbol = symbols.intern(data.readUTF());
+                int[] list = new int[data.readInt()];
+                for (int i = 0; i < list.length; i++) {
+                    list[i] = data.readInt();
+                }
+                graph.restoreNode(node, symbol, list);
+                break;
+            }
+            case DROP:
+                graph.removeNewest(data.readInt());
+                break;
+            case RELEVANT_INSERT:
+                relevant.insert(data.readInt(), data.readInt());
+                break;
+            case RELEVANT_REMOVE:
+                relevant.removeAt(data.readInt());
+                break;
+            default:
+                throw new IOException("Unknown journal entry " + op);
+        }
+    }
+    
+    /**
+     * A node was created.
+     */
+    public void created(int symbol) {
+        writeOp(NEW);
+        writeName(symbol);
+    }
+    
+    /**
+     * A node was linked to the end of the child list of a parent.
+     */
+    public void linked(int parent, int child) {
+        writeOp(LINK, parent, child);
+    }
+    
+    /**
+     * A node was linked at a position in the child list of a parent.
+     */
+    public void inserted(int parent, int child, int index) {
+        writeOp(INSERT, parent, child, index);
+    }
+    
+    /**
+     * A node was removed from the child list of its parent.
+     */
+    public void unlinked(int child) {
+        writeOp(UNLINK, child);
+    }
+    
+    /**
+     * A single node was deleted.
+     */
+    public void removed(int node) {
+        writeOp(REMOVE, node);
+    }
+    
+    /**
+     * A deleted node was brought back with its child list.
+     */
+    public void restored(int node, int symbol, int[] list) {
+        writeOp(RESTORE, node);
+        writeName(symbol);
+        writeInt(list.length);
+        for (int child : list) writeInt(child);
+    }
+    
+    /**
+     * The newest node was removed so its ID is given out again.
+     */
+    public void dropped(int node) {
+        writeOp(DROP, node);
+    }
+    
+    /**
+     * A node was inserted into the relevant nodes.
+     */
+    public void relevantInserted(int index, int node) {
+        writeOp(RELEVANT_INSERT, index, node);
+    }
+    
+    /**
+     * A node was removed from the relevant nodes.
+     */
+    public void relevantRemoved(int index) {
+        writeOp(RELEVANT_REMOVE, index);
+    }
+    
+    private void writeOp(byte op, int... values) {
+        try {
+            ops.writeByte(op);
+            for (int value : values) ops.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        opCount++;
+    }
+    
+    private void writeInt(int value) {
+        try {
+            ops.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private void writeName(int symbol) {
+        try {
+            ops.writeUTF(symbols.getName(symbol));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Append the changes made since the last entry as one entry. Nothing is
+     * written if neither the graph nor the relevant nodes changed.
+     * @throws IOException If the journal could not be written.
+     */
+    public void commit() throws IOException {
+        if (journal == null || opCount == 0) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(pending.size() + 12);
+        DataOutputStream entry = new DataOutputStream(bytes);
+        entry.writeLong(++sequence);
+        entry.writeInt(opCount);
+        pending.writeTo(entry);
+        journal.writeInt(bytes.size());
+        bytes.writeTo(journal);
+        journal.flush();
+        journalBytes += 4 + bytes.size();
+        pending.reset();
+        opCount = 0;
+        entries++;
+    }
+    
+    /**
+     * Returns whether enough was written since the last snapshot that a new
+     * one should be saved. This is after a number of entries, or once the
+     * journal is larger than the snapshot, so replaying the journal never
+     * takes much longer than reading the snapshot.
+     * @return True if a snapshot is due.
+     */
+    public boolean isDue() {
+        return entries >= CHECKPOINT || journalBytes > Math.max(MIN_JOURNAL, snapshotBytes);
+    }
+    
+    /**
+     * Save the whole graph as a snapshot and start the journal over.
+     * Changes that were not committed are discarded.
+     * @param graph Graph to save.
+     * @param relevant Relevant nodes.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public void snapshot(GraphInfo graph, RelevantNodes relevant) throws IOException {
+        if (journal == null) return;
+        File temp = new File(dir, SNAPSHOT + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            writeSnapshot(out, graph, relevant);
+        }
+        snapshotBytes = temp.length();
+        Files.move(temp.toPath(), new File(dir, SNAPSHOT).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // Entries up to the sequence number are in the snapshot, so the
+        // journal can be emptied
+        journal.close();
+        journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir, JOURNAL))));
+        pending.reset();
+        opCount = 0;
+        entries = 0;
+        journalBytes = 0;
+    }
+    
+    private void writeSnapshot(DataOutputStream out, GraphInfo graph, RelevantNodes relevant) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(sequence);
+        Map<Integer, Integer> index = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < graph.getLimit(); i++) {
+            int symbol = graph.getSymbol(i);
+            if (symbol >= 0 && !index.containsKey(symbol)) {
+                index.put(symbol, names.size());
+                names.add(symbols.getName(symbol));
+            }
+        }
+        out.writeInt(names.size());
+        for (String name : names) out.writeUTF(name);
+        out.writeInt(graph.getLimit());
+        out.writeInt(graph.size());
+        for (int i = 0; i < graph.getLimit(); i++) {
+            if (!graph.exists(i)) continue;
+            out.writeInt(i);
+            out.writeInt(index.get(graph.getSymbol(i)));
+            int[] children = graph.getChildren(i);
+            out.writeInt(children.length);
+            for (int child : children) out.writeInt(child);
+        }
+        out.writeInt(relevant.size());
+        for (int node : relevant) out.writeInt(node);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (journal != null) journal.close();
+        journal = null;
+    }
+    
+}
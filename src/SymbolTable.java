@@ -0,0 +1,82 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns an integer ID to every terminal and non-terminal symbol.
+ *
+ * Symbols are added once when a rule is read, after which rules and graph
+ * nodes refer to them by ID. IDs are never removed, so an ID stays valid
+ * across every version of the grammar. The table is shared between the
+ * grammar and the graph, so access is synchronized.
+ */
+public class SymbolTable {
+    
+    private Map<String, Integer> ids;
+    private String[] names;
+    private boolean[] nonTerminal;
+    private int size;
+    
+    public SymbolTable() {
+        ids = new HashMap<>();
+        names = new String[64];
+        nonTerminal = new boolean[64];
+    }
+    
+    /**
+     * Get the ID of a symbol, adding it to the table if it does not exist.
+     * @param name Symbol string.
+     * @return Symbol ID
+     */
+    public synchronized int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            nonTerminal = Arrays.copyOf(nonTerminal, size * 2);
+        }
+        names[size] = name;
+        nonTerminal[size] = Utils.nonEmpty(name, "<", ">");
+        ids.put(name, size);
+        return size++;
+    }
+    
+    /**
+     * Get the ID of a symbol without adding it to the table.
+     * @param name Symbol string.
+     * @return Symbol ID or -1 if the symbol does not exist.
+     */
+    public synchronized int lookup(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+    
+    /**
+     * Get the string value of a symbol.
+     * @param id Symbol ID
+     * @return Symbol string, or null for an invalid ID.
+     */
+    public synchronized String getName(int id) {
+        if (id < 0 || id >= size) return null;
+        return names[id];
+    }
+    
+    /**
+     * Returns whether a symbol is a non-terminal, meaning it is enclosed in
+     * angle brackets.
+     * @param id Symbol ID
+     * @return True for a non-terminal symbol.
+     */
+    public synchronized boolean isNonTerminal(int id) {
+        return id >= 0 && id < size && nonTerminal[id];
+    }
+    
+    /**
+     * Get the number of symbols in the table. Every ID is less than this.
+     * @return Number of symbols.
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+}
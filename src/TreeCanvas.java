@@ -0,0 +1,131 @@
+import javafx.geometry.Bounds;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Draws a {@link TreeLayout} directly, without running dot.
+ *
+ * The pane is as large as the whole tree so it can be scrolled, but the
+ * canvas inside it only covers the visible part of the scroll pane. Only the
+ * nodes and edges in that part are drawn.
+ */
+public class TreeCanvas extends Pane {
+    
+    private final ScrollPane view;
+    private final Canvas canvas;
+    private TreeLayout layout;
+    private int boxed = -1;
+    
+    /**
+     * @param view Scroll pane that will contain this pane.
+     */
+    public TreeCanvas(ScrollPane view) {
+        this.view = view;
+        canvas = new Canvas();
+        getChildren().add(canvas);
+        view.viewportBoundsProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+        view.hvalueProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+        view.vvalueProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+    }
+    
+    /**
+     * Show a new tree.
+     * @param layout Layout of the tree.
+     * @param boxed Node ID of the node to draw a box around, or -1.
+     */
+    public void setTree(TreeLayout layout, int boxed) {
+        this.layout = layout;
+        this.boxed = boxed;
+        setMinSize(layout.getWidth(), layout.getHeight());
+        setPrefSize(layout.getWidth(), layout.getHeight());
+        requestLayout();
+        draw();
+    }
+    
+    @Override
+    protected void layoutChildren() {
+        // The viewport bounds are offset by the scroll position
+        Bounds viewport = view.getViewportBounds();
+        double x = Math.max(0, -viewport.getMinX());
+        double y = Math.max(0, -viewport.getMinY());
+        canvas.relocate(x, y);
+        canvas.setWidth(Math.max(0, Math.min(viewport.getWidth(), getWidth() - x)));
+        canvas.setHeight(Math.max(0, Math.min(viewport.getHeight(), getHeight() - y)));
+        draw();
+    }
+    
+    private void draw() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double left = canvas.getLayoutX();
+        double top = canvas.getLayoutY();
+        double right = left + canvas.getWidth();
+        double bottom = top + canvas.getHeight();
+        g.setFill(Color.WHITE);
+        g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (layout == null) return;
+        g.save();
+        g.translate(-left, -top);
+        g.setStroke(Color.BLACK);
+        g.setLineWidth(1);
+        double half = layout.getNodeHeight() / 2;
+        
+        // Edges from each visible row to the row above it
+        for (int level = 1; level < layout.getLevelCount(); level++) {
+            double upper = layout.getLevelY(level - 1) + half;
+            double lower = layout.getLevelY(level) - half;
+            if (lower < top || upper > bottom) continue;
+            for (int n : layout.getLevel(level)) {
+                int parent = layout.getParent(n);
+                double x1 = layout.getX(parent);
+                double x2 = layout.getX(n);
+                if (Math.max(x1, x2) < left || Math.min(x1, x2) > right) continue;
+                g.strokeLine(x1, upper, x2, lower);
+            }
+        }
+        
+        // Nodes in the visible rows
+        g.setFill(Color.BLACK);
+        g.setFont(layout.getFont());
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.CENTER);
+        for (int level = 0; level < layout.getLevelCount(); level++) {
+            double y = layout.getLevelY(level);
+            if (y + half < top || y - half > bottom) continue;
+            int[] row = layout.getLevel(level);
+            for (int i = firstVisible(row, left); i < row.length; i++) {
+                int n = row[i];
+                double x = layout.getX(n);
+                double w = layout.getNodeWidth(n);
+                if (x - w / 2 > right) break;
+                g.fillText(layout.getLabel(n), x, y);
+                if (layout.getNode(n) == boxed) {
+                    g.strokeRect(x - w / 2, y - half, w, half * 2);
+                }
+            }
+        }
+        g.restore();
+    }
+    
+    /**
+     * Find the first node in a row that could be visible.
+     */
+    private int firstVisible(int[] row, double left) {
+        int low = 0;
+        int high = row.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int n = row[mid];
+            // Nodes in a row do not overlap, so their right edges are in
+            // the same order as their centers.
+            if (layout.getX(n) + layout.getNodeWidth(n) / 2 < left) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+    
+}
@@ -0,0 +1,413 @@
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Positions the nodes of a graph as a tidy tree, similar to the layout
+ * described by Reingold and Tilford.
+ *
+ * Subtrees are laid out from the bottom up. Each subtree keeps the outline
+ * of its left and right edges at every depth, and siblings are pushed
+ * together until their outlines are a fixed gap apart. A parent is then
+ * centered over its first and last child. Nodes without a parent are placed
+ * next to each other the same way.
+ */
+public class TreeLayout {
+    
+    /**
+     * Horizontal space between neighboring nodes.
+     */
+    public static final double NODE_GAP = 18;
+    /**
+     * Vertical space between the rows of the tree.
+     */
+    public static final double RANK_GAP = 36;
+    /**
+     * Space added on each side of a label.
+     */
+    public static final double PADDING = 4;
+    /**
+     * Space around the whole tree.
+     */
+    public static final double MARGIN = 8;
+    
+    private Font font;
+    private int[] nodes;
+    private String[] labels;
+    private double[] x;
+    private double[] y;
+    private double[] widths;
+    private int[] parents;
+    private int[][] levels;
+    private double nodeHeight;
+    private double width;
+    private double height;
+    
+    private TreeLayout() {}
+    
+    /**
+     * Lay out the current nodes of a graph.
+     * @param graph Graph to lay out.
+     * @param extra Whether to label non-terminal nodes with their ID.
+     * @param full Whether to label all nodes with their ID.
+     * @param font Font used to measure the labels.
+     * @return Layout of the graph.
+     */
+    public static TreeLayout layout(GraphInfo graph, boolean extra, boolean full, Font font) {
+        long start = System.nanoTime();
+        TreeLayout layout = new TreeLayout();
+        layout.font = font;
+        layout.build(graph, extra, full);
+        LatencyStats.record(LatencyStats.LAYOUT, start);
+        return layout;
+    }
+    
+    private void build(GraphInfo graph, boolean extra, boolean full) {
+        int limit = graph.getLimit();
+        Text text = new Text();
+        text.setFont(font);
+        text.setText("Mg");
+        nodeHeight = text.getLayoutBounds().getHeight() + PADDING;
+        
+        // Index of every node in the arrays of the layout
+        int[] index = new int[limit];
+        Arrays.fill(index, -1);
+        nodes = new int[graph.size()];
+        int count = 0;
+        for (int i = 0; i < limit; i++) {
+            if (!graph.exists(i)) continue;
+            index[i] = count;
+            nodes[count++] = i;
+        }
+        labels = new String[count];
+        widths = new double[count];
+        parents = new int[count];
+        int[][] children = new int[count][];
+        List<Integer> roots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int node = nodes[i];
+            labels[i] = graph.getLabel(node, extra, full);
+            text.setText(labels[i]);
+            widths[i] = text.getLayoutBounds().getWidth() + PADDING * 2;
+            int parent = graph.getParent(node);
+            parents[i] = parent < 0 ? -1 : index[parent];
+            if (parents[i] < 0) roots.add(i);
+            int[] c = graph.getChildren(node);
+            for (int j = 0; j < c.length; j++) {
+                c[j] = index[c[j]];
+            }
+            children[i] = c;
+        }
+        
+        // Visit children before parents
+        int[] order = new int[count];
+        int[] depth = new int[count];
+        boolean[] visited = new boolean[count];
+        int[] stack = new int[Math.max(count, 1)];
+        int size = 0;
+        for (int root : roots) {
+            size = visit(root, children, visited, stack, order, size, depth);
+        }
+        // Links that form a cycle leave nodes with no root above them. Each
+        // cycle is laid out as another tree, starting from one of its nodes.
+        int[] mark = new int[count];
+        for (int i = 0; i < count && size < count; i++) {
+            if (visited[i]) continue;
+            int n = i;
+            while (mark[n] != i + 1) {
+                mark[n] = i + 1;
+                n = parents[n];
+            }
+            parents[n] = -1;
+            roots.add(n);
+            size = visit(n, children, visited, stack, order, size, depth);
+        }
+        // Offset of each node from its parent
+        double[] offsets = new double[count];
+        Contour[] contours = new Contour[count];
+        for (int i = size - 1; i >= 0; i--) {
+            int n = order[i];
+            Contour contour = pack(children[n], contours, offsets);
+            if (contour == null) contour = new Contour();
+            contour.push(-widths[n] / 2, widths[n] / 2);
+            contours[n] = contour;
+            for (int c : children[n]) {
+                contours[c] = null;
+            }
+        }
+        double[] rootOffsets = new double[count];
+        int[] rootArray = roots.stream().mapToInt(Integer::intValue).toArray();
+        Contour forest = pack(rootArray, contours, rootOffsets);
+        
+        // Absolute positions
+        x = new double[count];
+        y = new double[count];
+        int maxDepth = 0;
+        for (int i = 0; i < size; i++) {
+            int n = order[i];
+            x[n] = parents[n] < 0 ? rootOffsets[n] : x[parents[n]] + offsets[n];
+            y[n] = depth[n] * (nodeHeight + RANK_GAP);
+            maxDepth = Math.max(maxDepth, depth[n]);
+        }
+        double left = forest == null ? 0 : forest.min();
+        double right = forest == null ? 0 : forest.max();
+        for (int i = 0; i < size; i++) {
+            int n = order[i];
+            x[n] += MARGIN - left;
+            y[n] += MARGIN + nodeHeight / 2;
+        }
+        width = right - left + MARGIN * 2;
+        height = size == 0 ? MARGIN * 2 : (maxDepth + 1) * nodeHeight + maxDepth * RANK_GAP + MARGIN * 2;
+        
+        // Rows of nodes sorted from left to right
+        int[] rowSizes = new int[maxDepth + 1];
+        for (int i = 0; i < size; i++) {
+            rowSizes[depth[order[i]]]++;
+        }
+        levels = new int[maxDepth + 1][];
+        for (int d = 0; d <= maxDepth; d++) {
+            levels[d] = new int[rowSizes[d]];
+            rowSizes[d] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            int n = order[i];
+            levels[depth[n]][rowSizes[depth[n]]++] = n;
+        }
+        for (int[] level : levels) {
+            sortByX(level);
+        }
+    }
+    
+    /**
+     * Add a node and the nodes below it to the visiting order, parents
+     * first. A child that was already visited is left out of its parent's
+     * children, so the children form a tree even if the links do not.
+     * @return Number of nodes in the order.
+     */
+    private static int visit(int root, int[][] children, boolean[] visited, int[] stack, int[] order, int size, int[] depth) {
+        int top = 0;
+        visited[root] = true;
+        stack[top++] = root;
+        while (top > 0) {
+            int n = stack[--top];
+            order[size++] = n;
+            int kept = 0;
+            for (int c : children[n]) {
+                if (visited[c]) continue;
+                visited[c] = true;
+                depth[c] = depth[n] + 1;
+                stack[top++] = c;
+                children[n][kept++] = c;
+            }
+            if (kept < children[n].length) children[n] = Arrays.copyOf(children[n], kept);
+        }
+        return size;
+    }
+    
+        /**
+     * Place subtrees next to each other from left to right.
+     * @param subtrees Subtrees to place.
+     * @param contours Outline of each subtree.
+     * @param offsets Receives the offset of each subtree from the center of
+     * the group.
+     * @return Outline of the group, or null if there are no subtrees.
+     */
+    private static Contour pack(int[] subtrees, Contour[] contours, double[] offsets) {
+        if (subtrees.length == 0) return null;
+        Contour group = contours[subtrees[0]];
+        double first = 0;
+        double last = 0;
+        offsets[subtrees[0]] = 0;
+        for (int i = 1; i < subtrees.length; i++) {
+            Contour next = contours[subtrees[i]];
+            double position = group.distance(next) + NODE_GAP;
+            offsets[subtrees[i]] = position;
+            last = position;
+            group = group.merge(next, position);
+        }
+        double mid = (first + last) / 2;
+        for (int subtree : subtrees) {
+            offsets[subtree] -= mid;
+        }
+        group.shift -= mid;
+        return group;
+    }
+    
+    private void sortByX(int[] level) {
+        Integer[] boxed = Arrays.stream(level).boxed().toArray(Integer[]::new);
+        Arrays.sort(boxed, (a, b) -> Double.compare(x[a], x[b]));
+        for (int i = 0; i < level.length; i++) {
+            level[i] = boxed[i];
+        }
+    }
+    
+    public Font getFont() {
+        return font;
+    }
+    
+    /**
+     * Get the total width of the tree including the margin.
+     * @return Width of the tree.
+     */
+    public double getWidth() {
+        return width;
+    }
+    
+    /**
+     * Get the total height of the tree including the margin.
+     * @return Height of the tree.
+     */
+    public double getHeight() {
+        return height;
+    }
+    
+    public double getNodeHeight() {
+        return nodeHeight;
+    }
+    
+    /**
+     * Get the number of rows in the tree.
+     * @return Number of rows.
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+    
+    /**
+     * Get the nodes in a row of the tree, sorted from left to right.
+     * The returned values are indices into this layout, not node IDs.
+     * @param level Row of the tree.
+     * @return Layout indices of the nodes.
+     */
+    public int[] getLevel(int level) {
+        return levels[level];
+    }
+    
+    /**
+     * Get the y coordinate of the center of a row.
+     * @param level Row of the tree.
+     * @return Y coordinate.
+     */
+    public double getLevelY(int level) {
+        return MARGIN + nodeHeight / 2 + level * (nodeHeight + RANK_GAP);
+    }
+    
+    /**
+     * Get the node ID of a node in the layout.
+     * @param i Layout index.
+     * @return Node ID
+     */
+    public int getNode(int i) {
+        return nodes[i];
+    }
+    
+    public String getLabel(int i) {
+        return labels[i];
+    }
+    
+    public double getX(int i) {
+        return x[i];
+    }
+    
+    public double getY(int i) {
+        return y[i];
+    }
+    
+    public double getNodeWidth(int i) {
+        return widths[i];
+    }
+    
+    /**
+     * Get the parent of a node in the layout.
+     * @param i Layout index.
+     * @return Layout index of the parent or -1.
+     */
+    public int getParent(int i) {
+        return parents[i];
+    }
+    
+    /**
+     * Outline of a subtree. Levels are stored from the deepest level up, so
+     * adding a parent on top does not move the existing levels. All values
+     * are offset by a shift so the whole outline can be moved at once.
+     */
+    private static class Contour {
+        
+        private double[] left = new double[4];
+        private double[] right = new double[4];
+        private int size;
+        private double shift;
+        
+        private void push(double l, double r) {
+            if (size == left.length) {
+                left = Arrays.copyOf(left, size * 2);
+                right = Arrays.copyOf(right, size * 2);
+            }
+            left[size] = l - shift;
+            right[size] = r - shift;
+            size++;
+        }
+        
+        private double left(int depth) {
+            return left[size - 1 - depth] + shift;
+        }
+        
+        private double right(int depth) {
+            return right[size - 1 - depth] + shift;
+        }
+        
+        /**
+         * Get the smallest offset for the other outline so that it does not
+         * overlap this one.
+         */
+        private double distance(Contour other) {
+            int common = Math.min(size, other.size);
+            double d = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < common; i++) {
+                d = Math.max(d, right(i) - other.left(i));
+            }
+            return d;
+        }
+        
+        /**
+         * Combine this outline with another outline placed to its right.
+         * The deeper of the two outlines is reused, so the work is
+         * proportional to the shorter one.
+         */
+        private Contour merge(Contour other, double position) {
+            other.shift += position;
+            int common = Math.min(size, other.size);
+            if (other.size > size) {
+                for (int i = 0; i < common; i++) {
+                    other.left[other.size - 1 - i] = left(i) - other.shift;
+                }
+                return other;
+            }
+            for (int i = 0; i < common; i++) {
+                right[size - 1 - i] = other.right(i) - shift;
+            }
+            return this;
+        }
+        
+        private double min() {
+            double m = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                m = Math.min(m, left[i] + shift);
+            }
+            return m;
+        }
+        
+        private double max() {
+            double m = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                m = Math.max(m, right[i] + shift);
+            }
+            return m;
+        }
+        
+    }
+    
+}
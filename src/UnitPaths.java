@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The chains of single producers above every production value of one
+ * version of the grammar, used to find a linear path from a node to a value.
+ *
+ * The chain of a value starts with the only rule that produces it, followed
+ * by the only rule that produces that rule, and so on. Rules already in the
+ * chain are not counted again. The chain ends at the first value that has
+ * no producer or more than one, so a linear path from a node to the value
+ * exists exactly when the node is in the chain.
+ */
+public class UnitPaths {
+    
+    private final Map<String, Chain> chains;
+    
+    /**
+     * Build the chain of every value in the grammar.
+     * @param index Index of the grammar.
+     */
+    public UnitPaths(GrammarIndex index) {
+        chains = new HashMap<>();
+        for (String value : index.getValues()) {
+            chains.put(value, new Chain(index, value));
+        }
+    }
+    
+    /**
+     * Get the chain of producers above a value.
+     * @param value Production value formatted with {@link Utils#formatRuleValue(String)}.
+     * @return Chain of the value, or null if the value is not in the grammar.
+     */
+    public Chain getChain(String value) {
+        return chains.get(value);
+    }
+    
+    /**
+     * The rules above one value, starting with the rule that produces it.
+     */
+    public static class Chain {
+        
+        private final List<String> rules;
+        private final boolean blocked;
+        
+        private Chain(GrammarIndex index, String value) {
+            List<String> rules = new ArrayList<>();
+            Set<String> checked = new HashSet<>();
+            String to = value;
+            boolean blocked;
+            while (true) {
+                Set<String> producers = index.getProducers(to);
+                if (producers == null) {
+                    blocked = false;
+                    break;
+                }
+                String parent = null;
+                int count = 0;
+                for (String s : producers) {
+                    if (checked.contains(s)) continue;
+                    parent = s;
+                    if (++count > 1) break;
+                }
+                if (count != 1) {
+                    blocked = true;
+                    break;
+                }
+                rules.add(parent);
+                checked.add(parent);
+                to = parent;
+            }
+            this.rules = Collections.unmodifiableList(rules);
+            this.blocked = blocked;
+        }
+        
+        /**
+         * Get the rules of the chain, from the producer of the value upwards.
+         * @return Rules including angle brackets.
+         */
+        public List<String> getRules() {
+            return rules;
+        }
+        
+        /**
+         * Get the position of a rule in the chain.
+         * @param rule Rule including angle brackets.
+         * @return Index of the rule, or -1 if there is no linear path from
+         * the rule to the value.
+         */
+        public int indexOf(String rule) {
+            return rules.indexOf(rule);
+        }
+        
+        /**
+         * Returns whether the chain ends at a value with more than one
+         * producer, instead of a value with no producer.
+         * @return True if the chain ends at a choice between rules.
+         */
+        public boolean isBlocked() {
+            return blocked;
+        }
+        
+    }
+    
+}
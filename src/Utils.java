@@ -1,9 +1,8 @@
 import javafx.scene.control.Alert;
 
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class Utils {
@@ -46,17 +45,27 @@ public class Utils {
      * @return Stream of pieces to add.
      */
     public static Stream<String> getRuleParts(String part) {
-        return Arrays.stream(part.replaceAll("<.+?>", " $0 ").split(" +")).filter(s -> !s.isEmpty());
+        int[] symbols = RuleLexer.symbols(part);
+        return IntStream.range(0, symbols.length / 2).mapToObj(i -> part.substring(symbols[i * 2], symbols[i * 2 + 1]));
     }
     
     /**
      * Return a production value formatted so that equivalent productions
      * are equivalent by String.equals().
+     *
+     * This is the same as joining the elements from getRuleParts, which
+     * together contain every character of the value except spaces.
      * @param value Production value.
      * @return Formatted value.
      */
     public static String formatRuleValue(String value) {
-        return getRuleParts(value).collect(Collectors.joining());
+        if (value.indexOf(' ') < 0) return value;
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != ' ') builder.append(c);
+        }
+        return builder.toString();
     }
     
     /**
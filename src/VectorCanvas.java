@@ -0,0 +1,176 @@
+import javafx.geometry.Bounds;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Draws a {@link PlainLayout} from dot as shapes instead of a bitmap.
+ *
+ * Like {@link TreeCanvas}, the pane is as large as the whole graph but the
+ * canvas inside it only covers the visible part of the scroll pane, so
+ * memory use does not grow with the size of the graph. Only the nodes and
+ * edges in that part are drawn. Scrolling with Ctrl held zooms in and out
+ * around the mouse.
+ */
+public class VectorCanvas extends Pane {
+    
+    public static final double MIN_ZOOM = 0.05;
+    public static final double MAX_ZOOM = 8;
+    /**
+     * Labels smaller than this many pixels are not drawn.
+     */
+    public static final double MIN_TEXT = 3;
+    
+    private final ScrollPane view;
+    private final Canvas canvas;
+    private final Font font;
+    private Font zoomedFont;
+    private PlainLayout layout;
+    private double zoom = 1;
+    
+    /**
+     * @param view Scroll pane that will contain this pane.
+     * @param font Font to draw labels with at a zoom of 1.
+     */
+    public VectorCanvas(ScrollPane view, Font font) {
+        this.view = view;
+        this.font = font;
+        zoomedFont = font;
+        canvas = new Canvas();
+        getChildren().add(canvas);
+        view.viewportBoundsProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+        view.hvalueProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+        view.vvalueProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+        setOnScroll(event -> {
+            if (!event.isControlDown() || event.getDeltaY() == 0) return;
+            event.consume();
+            zoom(Math.pow(1.1, event.getDeltaY() / 40), event.getX(), event.getY());
+        });
+    }
+    
+    /**
+     * Show a new graph. The zoom is kept.
+     * @param layout Layout of the graph.
+     */
+    public void setLayout(PlainLayout layout) {
+        this.layout = layout;
+        resize();
+        draw();
+    }
+    
+    /**
+     * Change the zoom while keeping a point of the pane in the same place
+     * in the scroll pane.
+     * @param factor Amount to multiply the zoom by.
+     * @param x Horizontal position in the pane.
+     * @param y Vertical position in the pane.
+     */
+    public void zoom(double factor, double x, double y) {
+        double next = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        if (layout == null || next == zoom) return;
+        factor = next / zoom;
+        zoom = next;
+        zoomedFont = Font.font(font.getFamily(), font.getSize() * zoom);
+        Bounds viewport = view.getViewportBounds();
+        // Position of the point in the scroll pane
+        double viewX = x + viewport.getMinX();
+        double viewY = y + viewport.getMinY();
+        resize();
+        double width = layout.getWidth() * zoom - viewport.getWidth();
+        double height = layout.getHeight() * zoom - viewport.getHeight();
+        if (width > 0) view.setHvalue(Math.max(0, Math.min(1, (x * factor - viewX) / width)));
+        if (height > 0) view.setVvalue(Math.max(0, Math.min(1, (y * factor - viewY) / height)));
+    }
+    
+    private void resize() {
+        double width = layout == null ? 0 : layout.getWidth() * zoom;
+        double height = layout == null ? 0 : layout.getHeight() * zoom;
+        setMinSize(width, height);
+        setPrefSize(width, height);
+        requestLayout();
+    }
+    
+    @Override
+    protected void layoutChildren() {
+        // The viewport bounds are offset by the scroll position
+        Bounds viewport = view.getViewportBounds();
+        double x = Math.max(0, -viewport.getMinX());
+        double y = Math.max(0, -viewport.getMinY());
+        canvas.relocate(x, y);
+        canvas.setWidth(Math.max(0, Math.min(viewport.getWidth(), getWidth() - x)));
+        canvas.setHeight(Math.max(0, Math.min(viewport.getHeight(), getHeight() - y)));
+        draw();
+    }
+    
+    private void draw() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.setFill(Color.WHITE);
+        g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (layout == null) return;
+        // Visible part in the coordinates of the layout
+        double left = canvas.getLayoutX() / zoom;
+        double top = canvas.getLayoutY() / zoom;
+        double right = left + canvas.getWidth() / zoom;
+        double bottom = top + canvas.getHeight() / zoom;
+        g.save();
+        g.scale(zoom, zoom);
+        g.translate(-left, -top);
+        g.setStroke(Color.BLACK);
+        // Lines stay at least a pixel wide when zoomed out
+        g.setLineWidth(Math.max(1, zoom) / zoom);
+        
+        for (int i = layout.firstEdge(top); i < layout.getEdgeCount(); i++) {
+            if (layout.getEdgeTop(i) > bottom) break;
+            if (layout.getEdgeBottom(i) < top || layout.getEdgeRight(i) < left || layout.getEdgeLeft(i) > right) continue;
+            double[] p = layout.getPoints(i);
+            setDashed(g, layout.isEdgeDashed(i));
+            g.beginPath();
+            g.moveTo(p[0], p[1]);
+            for (int j = 2; j + 5 < p.length; j += 6) {
+                g.bezierCurveTo(p[j], p[j + 1], p[j + 2], p[j + 3], p[j + 4], p[j + 5]);
+            }
+            g.stroke();
+        }
+        
+        boolean text = font.getSize() * zoom >= MIN_TEXT;
+        g.setFill(Color.BLACK);
+        g.setFont(zoomedFont);
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.CENTER);
+        for (int i = layout.firstNode(top); i < layout.getNodeCount(); i++) {
+            double y = layout.getNodeTop(i);
+            if (y > bottom) break;
+            double x = layout.getNodeLeft(i);
+            double w = layout.getNodeWidth(i);
+            double h = layout.getNodeHeight(i);
+            if (y + h < top || x + w < left || x > right) continue;
+            setDashed(g, layout.isNodeDashed(i));
+            if (layout.getShape(i) == PlainLayout.BOX) g.strokeRect(x, y, w, h);
+            else if (layout.getShape(i) == PlainLayout.ELLIPSE) g.strokeOval(x, y, w, h);
+            if (text) drawLabel(g, layout.getLabel(i), x + w / 2, y + h / 2);
+        }
+        g.restore();
+    }
+    
+    /**
+     * Draw a label at the size of the zoomed font. Text is drawn without
+     * the zoom so that it is not scaled as a shape.
+     */
+    private void drawLabel(GraphicsContext g, String label, double x, double y) {
+        g.save();
+        g.scale(1 / zoom, 1 / zoom);
+        g.fillText(label, x * zoom, y * zoom);
+        g.restore();
+    }
+    
+    private void setDashed(GraphicsContext g, boolean dashed) {
+        if (dashed) g.setLineDashes(5, 3);
+        else g.setLineDashes();
+    }
+    
+}